@@ -20,9 +20,7 @@ import android.support.v4.content.ContextCompat;
 import android.view.View;
 
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Locale;
@@ -207,8 +205,19 @@ public abstract class App extends android.app.Application {
       return calendar.getTimeInMillis() / 1000;
    }
 
-   private static final HashMap<String,SimpleDateFormat> UTC   = new HashMap<>();
-   private static final HashMap<String,SimpleDateFormat> LOCAL = new HashMap<>();
+   /**
+    * The formatters are confined to their thread, so formatting dates by list loaders, PDF writers
+    * and the main thread in parallel doesn't need any locking.
+    */
+   private static final ThreadLocal<HashMap<String,DateFormatter>> UTC   = newFormatterCache();
+   private static final ThreadLocal<HashMap<String,DateFormatter>> LOCAL = newFormatterCache();
+
+   private static ThreadLocal<HashMap<String,DateFormatter>> newFormatterCache() {
+      return new ThreadLocal<HashMap<String,DateFormatter>>() {
+         @Override
+         protected HashMap<String,DateFormatter> initialValue() { return new HashMap<>(); }
+      };
+   }
 
    /**
     * Returns the specified {@code posixTime} formatted according to the specified {@code format}.
@@ -226,14 +235,13 @@ public abstract class App extends android.app.Application {
     * @see <a href="https://en.wikipedia.org/wiki/Unix_time">POSIX time</a>
     */
    @NonNull
-   public static synchronized String formatDate(@NonNull String format, boolean utc, long posixTime) {
-      SimpleDateFormat sdf = (utc ? UTC : LOCAL).get(format);
-      if (sdf == null) {
-         sdf = new SimpleDateFormat(format, Locale.US);
-         sdf.setCalendar(new GregorianCalendar(utc ? TimeZone.getTimeZone("UTC") : TimeZone.getDefault()));
-         (utc ? UTC : LOCAL).put(format, sdf);
+   public static String formatDate(@NonNull String format, boolean utc, long posixTime) {
+      HashMap<String,DateFormatter> formatters = (utc ? UTC : LOCAL).get();
+      DateFormatter formatter = formatters.get(format);
+      if (formatter == null) {
+         formatters.put(format, formatter = new DateFormatter(format, utc));
       }
-      return sdf.format(new Date(posixTime * 1000));
+      return formatter.format(posixTime);
    }
 
    public static String formatDate(@StringRes int resId, boolean utc, long posixTime) {
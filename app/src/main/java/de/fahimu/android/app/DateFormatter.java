@@ -0,0 +1,98 @@
+/*
+ * DateFormatter.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.android.app;
+
+import android.support.annotation.NonNull;
+
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A formatter for POSIX times that must only be used by the thread that created it.
+ * If the pattern contains date fields only, the formatted strings are stored in a table
+ * indexed by the day number, so formatting a date of a recently used day needs no allocation.
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+final class DateFormatter {
+
+   private static final long MILLIS_PER_DAY = 86_400_000L;
+
+   private static final int TABLE_SIZE = 512;       // must be a power of two
+
+   private final SimpleDateFormat sdf;
+   private final TimeZone         timeZone;
+   private final Date             date = new Date();
+
+   private final long[]   days;      // days[i] is the day number of the string in texts[i]
+   private final String[] texts;     // null if the pattern contains time fields
+
+   /**
+    * Creates a new DateFormatter for the specified pattern.
+    *
+    * @param format
+    *       the pattern string.
+    * @param utc
+    *       if {@code true}, {@code getTimeZone("UTC")} will be used, else the default timezone.
+    */
+   DateFormatter(@NonNull String format, boolean utc) {
+      timeZone = utc ? TimeZone.getTimeZone("UTC") : TimeZone.getDefault();
+      sdf = new SimpleDateFormat(format, Locale.US);
+      sdf.setCalendar(new GregorianCalendar(timeZone));
+      days = isDateOnly(format) ? new long[TABLE_SIZE] : null;
+      texts = (days == null) ? null : new String[TABLE_SIZE];
+   }
+
+   /**
+    * Returns {@code true} if the specified pattern contains no fields smaller than a day.
+    * Quoted text is skipped.
+    */
+   private static boolean isDateOnly(String format) {
+      boolean quoted = false;
+      for (int i = 0; i < format.length(); i++) {
+         char c = format.charAt(i);
+         if (c == '\'') {
+            quoted = !quoted;
+         } else if (!quoted && "HkKhmsSaAzZX".indexOf(c) >= 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Returns the specified {@code posixTime} formatted according to the pattern of this formatter.
+    *
+    * @param posixTime
+    *       the POSIX time to format.
+    * @return the specified {@code posixTime} formatted according to the pattern of this formatter.
+    */
+   @NonNull
+   String format(long posixTime) {
+      final long millis = posixTime * 1000;
+      if (texts == null) {
+         date.setTime(millis);
+         return sdf.format(date);
+      }
+      final long local = millis + timeZone.getOffset(millis);
+      final long day = (local >= 0) ? local / MILLIS_PER_DAY : (local + 1) / MILLIS_PER_DAY - 1;
+      final int index = (int) day & (TABLE_SIZE - 1);
+      if (texts[index] == null || days[index] != day) {
+         date.setTime(millis);
+         texts[index] = sdf.format(date);
+         days[index] = day;
+      }
+      return texts[index];
+   }
+
+}
@@ -11,6 +11,7 @@ import android.content.Context;
 import android.graphics.Color;
 import android.os.AsyncTask;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.support.annotation.IdRes;
 import android.support.annotation.LayoutRes;
@@ -124,9 +125,10 @@ public final class ListView extends RecyclerView {
    /* ============================================================================================================== */
 
    public static abstract class Item<R extends Row> {
-      final public  R        row;
-      final public  long     rid;         // cached row.getOid()
-      final private String[] columns;
+      final public R    row;
+      final public long rid;              // cached row.getOid()
+
+      private volatile String[] columns;  // null until first requested if created by the lazy constructor
 
       @WorkerThread
       protected Item(R row, String... columns) {
@@ -135,31 +137,122 @@ public final class ListView extends RecyclerView {
          this.columns = columns;
       }
 
+      /**
+       * Creates an item whose columns are built by {@link #buildColumns()} when they are requested for the first
+       * time. Only used by {@link LazyItem} and {@link LazySearchableItem}, which implement {@link #buildColumns()}.
+       */
+      @WorkerThread
+      Item(R row) {
+         this(row, (String[]) null);
+      }
+
+      /**
+       * Builds the columns of an item created by the lazy constructor.
+       * May be called concurrently by a worker thread and the main thread, in which case the result
+       * of one of the calls will be cached, so the implementation must not have any side effects.
+       *
+       * @return the columns of this item.
+       */
+      @NonNull
+      String[] buildColumns() {
+         throw new RuntimeException("Item:buildColumns");     // unreachable, the columns are set eagerly
+      }
+
+      @NonNull
+      final String[] getColumns() {
+         String[] columns = this.columns;
+         if (columns == null) {
+            this.columns = columns = buildColumns();
+         }
+         return columns;
+      }
+
       public final String getText(int index) {
-         return columns[index];
+         return getColumns()[index];
       }
    }
 
+   /**
+    * An item whose columns are built by {@link #buildColumns()} when they are requested for the first time,
+    * i. e. when the item is filtered or bound for the first time.
+    */
+   public static abstract class LazyItem<R extends Row> extends Item<R> {
+      @WorkerThread
+      protected LazyItem(R row) {
+         super(row);
+      }
+
+      /** {@inheritDoc} */
+      @NonNull
+      @Override
+      protected abstract String[] buildColumns();
+   }
+
    public static abstract class SearchableItem<R extends Row> extends Item<R> {
-      final private SearchString searchString;
+      private volatile SearchString searchString;     // null until the first non-empty filter pass
+      private volatile int[]        highlights;       // calculated by the filter pass, see SearchString#getHighlights
 
       @WorkerThread
       protected SearchableItem(R row, String... columns) {
          super(row, columns);
-         SearchString.Builder builder = new SearchString.Builder(columns.length);
-         for (String column : columns) {
-            builder.add(column);
+      }
+
+      @WorkerThread
+      SearchableItem(R row) {
+         super(row);
+      }
+
+      @NonNull
+      @WorkerThread
+      private SearchString getSearchString() {
+         SearchString searchString = this.searchString;
+         if (searchString == null) {
+            String[] columns = getColumns();
+            SearchString.Builder builder = new SearchString.Builder(columns.length);
+            for (String column : columns) {
+               builder.add(column);
+            }
+            this.searchString = searchString = builder.buildSearchString();
          }
-         searchString = builder.buildSearchString();
+         return searchString;
       }
 
+      @MainThread
       public final void setText(int index, TextView textView) {
-         searchString.setText(index, textView, getText(index));
+         SearchString.setText(index, textView, getText(index), highlights);
       }
 
+      /**
+       * Returns {@code true} if this item contains the specified {@code normalizedQueries}.
+       * As a side effect, the ranges to highlight by {@link #setText(int, TextView)} are calculated,
+       * so binding the item on the main thread doesn't need to search again.
+       */
+      @WorkerThread
       public final boolean contains(String[] normalizedQueries) {
-         return searchString.contains(normalizedQueries);
+         if (normalizedQueries.length == 0 && searchString == null) {
+            return true;         // an empty query matches every item, no need to build the search string
+         }
+         SearchString searchString = getSearchString();
+         boolean contains = searchString.contains(normalizedQueries);
+         highlights = searchString.getHighlights();
+         return contains;
+      }
+   }
+
+   /**
+    * A searchable item whose columns are built by {@link #buildColumns()} when they are requested for the first
+    * time, i. e. when the item is filtered by a non-empty query or bound for the first time.
+    */
+   public static abstract class LazySearchableItem<R extends Row> extends SearchableItem<R> {
+      @WorkerThread
+      protected LazySearchableItem(R row) {
+         super(row);
       }
+
+      /** {@inheritDoc} */
+      @NonNull
+      @Override
+      protected abstract String[] buildColumns();
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
@@ -193,6 +286,10 @@ public final class ListView extends RecyclerView {
       private final LayoutInflater        inflater;
       private final LinearLayoutManager   layoutManager;
 
+      @Nullable
+      private AsyncTask<Void,Void,List<VH>> preInflateTask;
+      private LayoutInflater                workerInflater;     // used by preInflateTask only
+
       protected Adapter(Activity activity, @IdRes int listViewId, @StringRes int emptyStringId) {
          this.data = new ArrayList<>(0);
          this.dIdx = new HashMap<>(0);
@@ -216,11 +313,70 @@ public final class ListView extends RecyclerView {
          return list.get(position).rid;
       }
 
+      /**
+       * Inflates the specified number of view holders on a worker thread and puts them into the view pool
+       * of the list, so the first page of the list can be laid out without inflating any views on the main thread.
+       * The worker uses its own clone of the {@link LayoutInflater}, because the main thread may inflate views
+       * at the same time. The holders are created by {@link #createViewHolder(ViewGroup, int)}, which sets their
+       * view type, so the list takes them from the pool. The task is cancelled when the list is detached from
+       * its window, i. e. when the activity is destroyed, so it doesn't keep the activity alive.
+       *
+       * @param count
+       *       the number of view holders to inflate, typically the number of rows visible on one page.
+       */
+      @MainThread
+      public final void preInflate(final int count) {
+         final RecycledViewPool pool = listView.getRecycledViewPool();
+         pool.setMaxRecycledViews(VIEW_TYPE, Math.max(count, 5));          // 5 is the default maximum
+         workerInflater = inflater.cloneInContext(listView.getContext());
+         if (preInflateTask != null) { preInflateTask.cancel(false); }
+         preInflateTask = new AsyncTask<Void,Void,List<VH>>() {
+            @Override
+            @WorkerThread
+            protected List<VH> doInBackground(Void... params) {
+               try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+                  List<VH> holders = new ArrayList<>(count);
+                  for (int i = 0; i < count && !isCancelled(); i++) {
+                     holders.add(createViewHolder(listView, VIEW_TYPE));
+                  }
+                  return holders;
+               }
+            }
+
+            @Override
+            @MainThread
+            protected void onPostExecute(List<VH> holders) {
+               preInflateTask = null;
+               for (VH holder : holders) {
+                  pool.putRecycledView(holder);
+               }
+            }
+         }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+         listView.addOnAttachStateChangeListener(new OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View view) { }
+
+            @Override
+            public void onViewDetachedFromWindow(View view) {
+               listView.removeOnAttachStateChangeListener(this);
+               if (preInflateTask != null) { preInflateTask.cancel(false); preInflateTask = null; }
+            }
+         });
+      }
+
+      /** The only view type of the items, which is the default view type of {@link RecyclerView.Adapter}. */
+      private static final int VIEW_TYPE = 0;
+
       protected abstract VH createViewHolder(LayoutInflater inflater, ViewGroup parent);
 
+      /**
+       * Creates a view holder with the adapter's inflater on the main thread,
+       * or with the cloned inflater on the worker thread of {@link #preInflate(int)}.
+       */
       @Override
       public final VH onCreateViewHolder(ViewGroup parent, int viewType) {
-         return createViewHolder(inflater, parent);
+         boolean main = Looper.myLooper() == Looper.getMainLooper();
+         return createViewHolder(main ? inflater : workerInflater, parent);
       }
 
       @Override
@@ -276,6 +432,43 @@ public final class ListView extends RecyclerView {
          data.set(dIdx.get(row.getOid()), createItem(row));
       }
 
+      /**
+       * Removes the item with the specified row-id from the displayed list without filtering the data again,
+       * e. g. after the row has been marked as done. If {@link #SHOW_DELAYED} is set, the item is removed after
+       * {@link #MIN_DELAY}. While an update is running, its worker compares the list with the data, so then the
+       * removal is left to a new update with the specified {@code filter}, which must not match the item any more.
+       *
+       * @param flags
+       *       the flags passed to {@link #onUpdated(int, List)}, optionally or-ed with {@link #SHOW_DELAYED}.
+       * @param rid
+       *       the row-id of the item to remove.
+       * @param filter
+       *       the filter to use if the item cannot be removed immediately.
+       */
+      @MainThread
+      public final void removeAsync(final int flags, final long rid, @NonNull final Filter<I> filter) {
+         handler.postDelayed(new Runnable() {
+            @Override
+            public void run() { remove(flags & ~SHOW_DELAYED, rid, filter); }
+         }, (flags & SHOW_DELAYED) == SHOW_DELAYED ? MIN_DELAY : 0);
+      }
+
+      @MainThread
+      private void remove(int flags, long rid, @NonNull Filter<I> filter) {
+         if (running) {
+            updateAsync(flags, filter);
+         } else {
+            for (int i = 0; i < list.size(); i++) {
+               if (list.get(i).rid == rid) {
+                  list.remove(i);
+                  notifyItemRemoved(i);
+                  break;
+               }
+            }
+            onUpdated(flags & USER_FLAGS, Collections.unmodifiableList(data));
+         }
+      }
+
       /* ----------------------------------------------------------------------------------------------------------- */
 
       @WorkerThread
@@ -326,67 +519,119 @@ public final class ListView extends RecyclerView {
          }
       }
 
-      private boolean firstRun = true;
-
       static final public  int RELOAD_DATA  = 0x0100_0000;
       static final public  int SHOW_DELAYED = 0x0200_0000;
       static final private int USER_FLAGS   = 0x00ff_ffff;
 
+      static final private long MIN_DELAY = 1000;       // minimum time to show the progress bar or a delayed update
+
+      private final Handler handler   = new Handler();
+      private final long    createdAt = SystemClock.uptimeMillis();
+
+      private boolean firstRun = true;
+
       @MainThread
       protected abstract void onUpdated(int flags, @Nullable List<I> data);
 
-      private AsyncTask<Void,Void,Void> createUpdateTask(final int flags, @NonNull final Filter<I> filter) {
-         return new AsyncTask<Void,Void,Void>() {
+      /**
+       * Returns a new task that reloads the data if requested and calculates the modifications of the list.
+       * The task does not apply the modifications itself, see {@link #applyModifications(int, long, LinkedList)}.
+       * If another update was requested while the task was running, its filter pass is abandoned as stale,
+       * and its flags will be handed over to the pending update.
+       */
+      private AsyncTask<Void,Void,LinkedList<Mod>> createUpdateTask(final int flags, @NonNull final Filter<I> filter,
+            final int generation) {
+         final long requested = SystemClock.uptimeMillis();
+         return new AsyncTask<Void,Void,LinkedList<Mod>>() {
             @Override
             @WorkerThread
-            protected Void doInBackground(Void... params) {
+            protected LinkedList<Mod> doInBackground(Void... params) {
                try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-                  long start = SystemClock.uptimeMillis();
                   if ((flags & RELOAD_DATA) == RELOAD_DATA) { reloadData(); }
-                  calculateModifications(filter);
-                  if (firstRun || (flags & SHOW_DELAYED) == SHOW_DELAYED) {
-                     long sleep = start + 1000 - SystemClock.uptimeMillis();
-                     if (sleep >= 10) { SystemClock.sleep(sleep); }
-                     firstRun = false;
-                  }
-                  return null;
+                  return calculateModifications(filter, generation);
                }
             }
 
             @Override
             @MainThread
-            protected void onPostExecute(Void aVoid) {
+            protected void onPostExecute(LinkedList<Mod> mods) {
                try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-                  int offset = 0;
-                  for (Adapter.Mod mod : mods) {
-                     offset = mod.apply(offset);
-                  }
-                  if (list.isEmpty() || list.get(0) instanceof SearchableItem) {
-                     // searchString changed, so redraw complete list after 500 ms (after mods are applied)
-                     new Handler().postDelayed(new Runnable() {
-                        @Override
-                        public void run() { notifyDataSetChanged(); }
-                     }, mods.isEmpty() ? 10 : 500);
+                  if (mods == null) {
+                     // data has already been reloaded, so don't hand over RELOAD_DATA to the pending update
+                     scope.d("filter pass abandoned, generation=" + generation);
+                     pendingFlags |= flags & ~RELOAD_DATA;
+                     executeNext();
+                  } else {
+                     applyModifications(flags, requested, mods);
                   }
-                  mods = null;      // let the GC do it's work
-
-                  onUpdated(flags & USER_FLAGS, Collections.unmodifiableList(data));
-                  executeNext();
                }
             }
          };
       }
 
-      private int nextTaskFlags;
+      /**
+       * Applies the specified modifications to the list. For the first time after creation (the progress bar is
+       * shown) or if {@link #SHOW_DELAYED} is set, the modifications will not be applied before {@link #MIN_DELAY}
+       * elapsed. Instead of blocking the worker, the waiting is done by posting to the main thread's handler.
+       */
+      @MainThread
+      private void applyModifications(final int flags, long requested, final LinkedList<Mod> mods) {
+         long applyAt = firstRun ? createdAt + MIN_DELAY :
+                        (flags & SHOW_DELAYED) == SHOW_DELAYED ? requested + MIN_DELAY : 0;
+         if (applyAt > SystemClock.uptimeMillis()) {
+            handler.postAtTime(new Runnable() {
+               @Override
+               public void run() { applyModifications(flags, mods); }
+            }, applyAt);
+         } else {
+            applyModifications(flags, mods);
+         }
+      }
+
+      @MainThread
+      private void applyModifications(int flags, LinkedList<Mod> mods) {
+         try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+            int offset = 0;
+            for (Mod mod : mods) {
+               offset = mod.apply(offset);
+            }
+            if (list.isEmpty() || list.get(0) instanceof SearchableItem) {
+               // highlights changed, so redraw complete list after 500 ms (after mods are applied)
+               handler.postDelayed(new Runnable() {
+                  @Override
+                  public void run() { notifyDataSetChanged(); }
+               }, mods.isEmpty() ? 10 : 500);
+            }
+            firstRun = false;
+
+            onUpdated(flags & USER_FLAGS, Collections.unmodifiableList(data));
+            executeNext();
+         }
+      }
+
+      /* ----------------------------------------------------------------------------------------------------------- */
+
+      private boolean running;            // true from starting an update task until its modifications are applied
+      private int     pendingFlags;       // the or-ed flags of all updates requested while running
+      @Nullable
+      private Filter<I> pendingFilter;    // the most recent filter requested while running, null if none is pending
 
-      private AsyncTask<Void,Void,Void> activeTask, nextTask;
+      /** Incremented by each request, so that a running filter pass can detect that it has become stale. */
+      private volatile int generation;
 
+      /**
+       * Starts the pending update, if any. All updates requested while the previous update was running
+       * are collapsed into a single one, so bursts of requests will never build up a queue of reloads.
+       */
       @MainThread
-      private synchronized void executeNext() {
-         nextTaskFlags = 0;
-         activeTask = nextTask; nextTask = null;
-         if (activeTask != null) {
-            activeTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      private void executeNext() {
+         if (pendingFilter == null) {
+            running = false;
+         } else {
+            running = true;
+            AsyncTask<Void,Void,LinkedList<Mod>> task = createUpdateTask(pendingFlags, pendingFilter, generation);
+            pendingFlags = 0; pendingFilter = null;
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
          }
       }
 
@@ -399,57 +644,60 @@ public final class ListView extends RecyclerView {
       }
 
       @MainThread
-      public final synchronized void updateAsync(int flags, @NonNull Filter<I> filter) {
-         if (activeTask == null) {
-            activeTask = createUpdateTask(flags, filter);
-            activeTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-         } else {
-            // 'Merge' the tasks; the new flags are the previous next task's user flags
-            // or-ed with this user flags, the filter is always the most recent filter.
-            nextTask = createUpdateTask(nextTaskFlags |= flags, filter);
-         }
+      public final void updateAsync(int flags, @NonNull Filter<I> filter) {
+         // 'Merge' the requests; the flags are or-ed, the filter is always the most recent filter.
+         generation++;
+         pendingFlags |= flags; pendingFilter = filter;
+         if (!running) { executeNext(); }
       }
 
       /* ----------------------------------------------------------------------------------------------------------- */
 
-      private LinkedList<Adapter.Mod> mods;
-
+      /**
+       * Compares the filtered {@link #data} with the currently displayed {@link #list} and returns the
+       * modifications to apply. Returns {@code null} if another update was requested in the meantime,
+       * because then the result would be discarded anyway.
+       */
+      @Nullable
       @WorkerThread
-      private void calculateModifications(@NonNull Filter<I> filter) {
-         mods = new LinkedList<>();
+      private LinkedList<Mod> calculateModifications(@NonNull Filter<I> filter, int generation) {
+         LinkedList<Mod> mods = new LinkedList<>();
          int l = 0, d = 0, ls = list.size(), ds = data.size();
          while (l < ls && d < ds) {
+            if (generation != this.generation) { return null; }
             I listItem = list.get(l);
             Integer index = dIdx.get(listItem.rid);
             if (index == null || !filter.matches(data.get(index))) {
-               add(new Remove(l++));
+               add(mods, new Remove(l++));
             } else {
                while (d < index) {
                   I dataItem = data.get(d++);
                   if (filter.matches(dataItem)) {
-                     add(new Insert(l, dataItem));
+                     add(mods, new Insert(l, dataItem));
                   }
                }
                I dataItem = data.get(d++);
                if (listItem != dataItem) {
-                  add(new Change(l, dataItem));
+                  add(mods, new Change(l, dataItem));
                }
                l++;
             }
          }
          while (l < ls) {           // remove remaining items from list
-            add(new Remove(l++));
+            add(mods, new Remove(l++));
          }
          while (d < ds) {           // add remaining items in data to list if filter matches
+            if (generation != this.generation) { return null; }
             I dataItem = data.get(d++);
             if (filter.matches(dataItem)) {
-               add(new Insert(l, dataItem));
+               add(mods, new Insert(l, dataItem));
             }
          }
+         return mods;
       }
 
       @WorkerThread
-      private void add(Adapter.Mod next) {
+      private void add(LinkedList<Mod> mods, Mod next) {
          if (mods.isEmpty() || !mods.getLast().merge(next)) { mods.addLast(next); }
       }
 
@@ -7,6 +7,7 @@
 package de.fahimu.android.app;
 
 import android.support.annotation.ColorInt;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
@@ -57,12 +58,22 @@ public final class SearchString implements Comparable<SearchString> {
    @ColorInt
    private static int spanColor = 0;
 
+   /**
+    * The spans are stateless, so they can be attached to any number of texts at the same time.
+    * Within one text, the n-th highlighted range uses the n-th span.
+    */
+   private static final ArrayList<ForegroundColorSpan> colorSpans = new ArrayList<>();
+
    @NonNull
-   private static ForegroundColorSpan createColorSpan() {
+   @MainThread
+   private static ForegroundColorSpan getColorSpan(int n) {
       if (spanColor == 0) {
          spanColor = App.getColorFromRes(android.R.color.holo_red_dark);
       }
-      return new ForegroundColorSpan(spanColor);
+      while (colorSpans.size() <= n) {
+         colorSpans.add(new ForegroundColorSpan(spanColor));
+      }
+      return colorSpans.get(n);
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
@@ -155,21 +166,61 @@ public final class SearchString implements Comparable<SearchString> {
 
    /* -------------------------------------------------------------------------------------------------------------- */
 
-   public void setText(int field, TextView textView, String string) {
+   /**
+    * Returns the ranges found by the last call of {@link #contains(String[])} as an array of triples
+    * {@code (field, start, end)}, where {@code start} and {@code end} are relative to the string of the field.
+    * The triples are ordered by field. If there is nothing to highlight, {@code null} will be returned.
+    *
+    * @return the ranges found by the last call of {@link #contains(String[])}.
+    */
+   @Nullable
+   @WorkerThread
+   public int[] getHighlights() {
+      final int[] tokensIndex = this.tokensIndex;
       if (tokensIndex == null) {
-         textView.setText(string);
+         return null;
       } else {
-         SpannableString text = new SpannableString(string);
-         final int tokensStart = offset[field], tokensEnd = offset[field + 1];
-         for (int i = 0; i < tokensIndex.length; ) {
+         final int[] highlights = new int[tokensIndex.length / 2 * 3];
+         for (int field = 0, i = 0, h = 0; i < tokensIndex.length; ) {
             final int index = tokensIndex[i++], length = tokensIndex[i++];
-            if (index >= tokensEnd) { break; }
-            if (index >= tokensStart) {
-               text.setSpan(createColorSpan(), index - tokensStart, index - tokensStart + length, 0);
+            while (index >= offset[field + 1]) { field++; }    // tokensIndex is sorted by index
+            highlights[h++] = field;
+            highlights[h++] = index - offset[field];
+            highlights[h++] = index - offset[field] + length;
+         }
+         return highlights;
+      }
+   }
+
+   public void setText(int field, TextView textView, String string) {
+      setText(field, textView, string, getHighlights());
+   }
+
+   /**
+    * Sets the specified string as the text of the specified text view and highlights
+    * the ranges of the specified field, as returned by {@link #getHighlights()}.
+    *
+    * @param field
+    *       the field to highlight.
+    * @param textView
+    *       the text view.
+    * @param string
+    *       the string of the field.
+    * @param highlights
+    *       the ranges to highlight or {@code null}.
+    */
+   @MainThread
+   public static void setText(int field, TextView textView, String string, @Nullable int[] highlights) {
+      SpannableString text = null;
+      if (highlights != null) {
+         for (int i = 0, n = 0; i < highlights.length; i += 3) {
+            if (highlights[i] == field) {
+               if (text == null) { text = new SpannableString(string); }
+               text.setSpan(getColorSpan(n++), highlights[i + 1], highlights[i + 2], 0);
             }
          }
-         textView.setText(text);
       }
+      textView.setText(text == null ? string : text);
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
@@ -11,6 +11,7 @@ import android.os.AsyncTask;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * A task registry for convenient cancelling of multiple running {@link android.os.AsyncTask AsyncTasks}.
@@ -36,10 +37,22 @@ public final class TaskRegistry {
     * @param task
     *       the task to register and execute.
     */
-   public synchronized void add(AsyncTask<Void,?,?> task) {
+   public void add(AsyncTask<Void,?,?> task) {
+      add(task, AsyncTask.THREAD_POOL_EXECUTOR);
+   }
+
+   /**
+    * Adds the specified {@code task} to the registry and executes it with the specified {@code executor}.
+    *
+    * @param task
+    *       the task to register and execute.
+    * @param executor
+    *       the executor, e. g. one that limits the number of tasks running at the same time.
+    */
+   public synchronized void add(AsyncTask<Void,?,?> task, Executor executor) {
       Log.d("task=" + task);
       asyncTasks.add(task);
-      task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+      task.executeOnExecutor(executor);
    }
 
    /**
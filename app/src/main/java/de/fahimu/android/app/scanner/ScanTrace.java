@@ -0,0 +1,197 @@
+/*
+ * ScanTrace.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.android.app.scanner;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import de.fahimu.android.app.App;
+import de.fahimu.android.app.Log;
+import de.fahimu.android.share.ExternalFile;
+import de.fahimu.android.share.ExternalOutputStream;
+
+/**
+ * Measures the latency of a single scan, from the {@link android.view.KeyEvent#KEYCODE_ENTER KEYCODE_ENTER}
+ * key event that terminates the barcode up to the feedback shown to the user.
+ * The time between two calls of {@link #mark(Stage)} is accounted to the specified stage; if a stage is marked
+ * more than once, the times are summed up. {@link #finish()} adds the times of the scan to the histograms,
+ * which can be {@link #dump() dumped} to the log or {@link #export(ExternalFile) exported} to a file.
+ * <p> A {@code ScanTrace} must only be used by one thread at a time; it may be handed over to a worker thread. </p>
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+public final class ScanTrace {
+
+   public enum Stage {
+      /** From the terminating key event until the barcode is delivered to {@code onBarcode}. */
+      KEY,
+      /** Parsing the barcode as a serial number or an ISBN. */
+      PARSE,
+      /** Looking up the user or book and their lendings. */
+      LOOKUP,
+      /** Writing the lending to the database. */
+      WRITE,
+      /** Playing the sound and starting the display animation. */
+      UI
+   }
+
+   private static final Stage[] STAGES = Stage.values();
+
+   private static final int TOTAL = STAGES.length;
+
+   /** Bucket {@code 0} counts times below 64 µs, bucket {@code i} times below 2<sup>i+6</sup> µs. */
+   private static final int BUCKETS = 16;
+
+   private static final int[][] counts = new int[TOTAL + 1][BUCKETS];
+   private static final long[]  sums   = new long[TOTAL + 1];
+   private static final long[]  maxs   = new long[TOTAL + 1];
+
+   /* ============================================================================================================== */
+
+   private final long    start;
+   private final long[]  nanos    = new long[TOTAL];
+   private       int     marked   = 0;         // bit i is set if stage i was marked
+   private       long    last;
+   private       boolean finished = false;
+
+   /**
+    * Creates a new trace for a barcode terminated by a key event at the specified time.
+    * The time until now is accounted to {@link Stage#KEY}.
+    *
+    * @param eventTime
+    *       the {@link android.view.KeyEvent#getEventTime() event time} of the terminating key event.
+    */
+   ScanTrace(long eventTime) {
+      last = System.nanoTime();
+      long key = Math.max(0, SystemClock.uptimeMillis() - eventTime) * 1_000_000L;
+      start = last - key;
+      nanos[Stage.KEY.ordinal()] = key;
+      marked = 1 << Stage.KEY.ordinal();
+   }
+
+   /**
+    * Accounts the time since the previous mark to the specified {@code stage}.
+    *
+    * @param stage
+    *       the stage that has just been completed.
+    */
+   public void mark(@NonNull Stage stage) {
+      long now = System.nanoTime();
+      nanos[stage.ordinal()] += now - last;
+      marked |= 1 << stage.ordinal();
+      last = now;
+   }
+
+   /**
+    * Marks {@link Stage#UI} and adds the times of this trace to the histograms.
+    * Subsequent calls of this method are ignored.
+    */
+   public void finish() {
+      if (finished) { return; }
+      finished = true;
+      mark(Stage.UI);
+      synchronized (ScanTrace.class) {
+         for (int i = 0; i < TOTAL; i++) {
+            if ((marked & (1 << i)) != 0) { add(i, nanos[i] / 1000); }
+         }
+         add(TOTAL, (last - start) / 1000);
+      }
+   }
+
+   private static void add(int row, long micros) {
+      int bucket = (micros < 64) ? 0 : Math.min(BUCKETS - 1, 58 - Long.numberOfLeadingZeros(micros));
+      counts[row][bucket]++;
+      sums[row] += micros;
+      maxs[row] = Math.max(maxs[row], micros);
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Returns the number of finished traces since the last {@link #reset()}.
+    *
+    * @return the number of finished traces since the last {@link #reset()}.
+    */
+   public static synchronized int getCount() {
+      int count = 0;
+      for (int n : counts[TOTAL]) { count += n; }
+      return count;
+   }
+
+   /**
+    * Clears the histograms.
+    */
+   public static synchronized void reset() {
+      for (int[] row : counts) { Arrays.fill(row, 0); }
+      Arrays.fill(sums, 0);
+      Arrays.fill(maxs, 0);
+   }
+
+   /**
+    * Returns the histograms as a text table, one line per stage and one column per bucket.
+    * The times are given in microseconds.
+    *
+    * @return the histograms as a text table.
+    */
+   @NonNull
+   public static synchronized String dump() {
+      StringBuilder b = new StringBuilder(2048);
+      b.append(App.format("%-6s %6s %8s %8s", "stage", "count", "avg", "max"));
+      for (int i = 0; i < BUCKETS; i++) {
+         b.append(App.format(" %6s", (i < BUCKETS - 1 ? "<" : ">=") + bound(i)));
+      }
+      b.append('\n');
+      for (int row = 0; row <= TOTAL; row++) {
+         int count = 0;
+         for (int n : counts[row]) { count += n; }
+         String name = (row < TOTAL) ? STAGES[row].name() : "TOTAL";
+         long avg = (count == 0) ? 0 : sums[row] / count;
+         b.append(App.format("%-6s %6d %8d %8d", name, count, avg, maxs[row]));
+         for (int n : counts[row]) {
+            b.append(App.format(" %6d", n));
+         }
+         b.append('\n');
+      }
+      return b.toString();
+   }
+
+   private static String bound(int bucket) {
+      long micros = (bucket < BUCKETS - 1) ? 64L << bucket : 64L << (bucket - 1);
+      return (micros < 1000) ? micros + "u" : (micros < 1_000_000) ? micros / 1000 + "m" : micros / 1_000_000 + "s";
+   }
+
+   /**
+    * Sends the {@link #dump() histograms} to the log, one message per line.
+    */
+   public static void log() {
+      for (String line : dump().split("\n")) {
+         Log.d(line);
+      }
+   }
+
+   /**
+    * Writes the {@link #dump() histograms} to the specified file.
+    *
+    * @param file
+    *       the file to write.
+    */
+   public static void export(@NonNull ExternalFile file) {
+      ExternalOutputStream os = ExternalOutputStream.newInstance(file);
+      try {
+         os.write(dump().getBytes(Charset.forName("UTF-8")));
+      } finally {
+         os.close();
+      }
+   }
+
+}
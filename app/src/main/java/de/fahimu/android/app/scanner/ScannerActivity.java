@@ -7,9 +7,12 @@
 package de.fahimu.android.app.scanner;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.util.SparseArray;
 import android.view.InputDevice;
 import android.view.KeyEvent;
 import android.view.View;
@@ -17,6 +20,7 @@ import android.view.View.OnLayoutChangeListener;
 import android.view.ViewGroup;
 
 
+import java.util.ArrayDeque;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -101,13 +105,90 @@ public abstract class ScannerActivity extends Activity {
    }
 
    /**
-    * The string builder where the barcode is assembled.
+    * The maximum number of completed barcodes waiting to be delivered with {@link #onBarcode(String) onBarcode}.
     */
-   private final StringBuilder barcodeAssembler = new StringBuilder(23);
+   private static final int MAX_BACKLOG = 16;
+
+   /**
+    * A completed barcode together with the {@link KeyEvent#getEventTime() event time} of its terminating key event.
+    */
+   private static final class Scan {
+      final String barcode;
+      final long   eventTime;
+
+      Scan(String barcode, long eventTime) {
+         this.barcode = barcode;
+         this.eventTime = eventTime;
+      }
+   }
+
+   /**
+    * The string builders where the barcodes are assembled, one per {@link InputDevice#getId() device id},
+    * so the key events of two scanners used at the same time cannot interleave.
+    */
+   private final SparseArray<StringBuilder> barcodeAssemblers = new SparseArray<>(2);
+
+   /**
+    * The completed barcodes in the order of their terminating key events.
+    */
+   private final ArrayDeque<Scan> backlog = new ArrayDeque<>(MAX_BACKLOG);
+
+   private final Handler handler = new Handler();
+
+   /**
+    * Delivers the oldest completed barcode and posts itself again if there are more.
+    * Each barcode is delivered in a message of its own, so key events are handled in between.
+    */
+   private final Runnable dispatcher = new Runnable() {
+      @Override
+      public void run() {
+         Scan scan = backlog.poll();
+         if (scan != null) {
+            scanTrace = new ScanTrace(scan.eventTime);
+            onUserInteraction();
+            onBarcode(scan.barcode);
+            scanTrace = null;
+            onBacklogChanged(backlog.size());
+         }
+         if (!backlog.isEmpty()) { handler.post(this); }
+      }
+   };
+
+   @Override
+   protected void onPause() {
+      super.onPause();
+      handler.removeCallbacks(dispatcher);
+      barcodeAssemblers.clear();
+      if (!backlog.isEmpty()) {
+         Log.d("****** " + backlog.size() + " barcodes discarded");
+         backlog.clear();
+         onBacklogChanged(0);
+      }
+   }
+
+   /**
+    * The trace of the barcode that is currently delivered with {@link #onBarcode(String) onBarcode}.
+    */
+   private ScanTrace scanTrace = null;
+
+   /**
+    * Returns the trace of the barcode that is currently delivered with {@link #onBarcode(String) onBarcode}.
+    * Subclasses may {@link ScanTrace#mark(ScanTrace.Stage) mark} further stages and must call
+    * {@link ScanTrace#finish()} as soon as the feedback has been given to the user.
+    *
+    * @return the trace of the current barcode.
+    */
+   @NonNull
+   protected final ScanTrace getScanTrace() {
+      if (scanTrace == null) { scanTrace = new ScanTrace(SystemClock.uptimeMillis()); }
+      return scanTrace;
+   }
 
    /**
     * Collects {@link KeyEvent}s from non-virtual devices until {@link KeyEvent#KEYCODE_ENTER KEYCODE_ENTER}
-    * is detected, and then delivers the barcode with {@link #onBarcode(String) onBarcode}.
+    * is detected, and then appends the barcode to the backlog, from where it will be delivered with
+    * {@link #onBarcode(String) onBarcode}. If the backlog is full, the barcode is passed to
+    * {@link #onBarcodeDropped(String) onBarcodeDropped} instead.
     *
     * @param event
     *       the KeyEvent.
@@ -120,20 +201,48 @@ public abstract class ScannerActivity extends Activity {
       } else {
          if (event.getAction() == KeyEvent.ACTION_UP && event.getMetaState() == 0) {
             int keyCode = event.getKeyCode();
+            StringBuilder barcodeAssembler = barcodeAssemblers.get(event.getDeviceId());
+            if (barcodeAssembler == null) {
+               barcodeAssemblers.put(event.getDeviceId(), barcodeAssembler = new StringBuilder(23));
+            }
             if (keyCode >= KeyEvent.KEYCODE_0 && keyCode <= KeyEvent.KEYCODE_9) {
                barcodeAssembler.append((char) ('0' + keyCode - KeyEvent.KEYCODE_0));
             } else if (keyCode == KeyEvent.KEYCODE_ENTER) {
                String barcode = barcodeAssembler.toString();
-               Log.d("barcode=" + barcode);
-               onUserInteraction();
-               onBarcode(barcode);
                barcodeAssembler.setLength(0);      // reset barcode assembler
+               Log.d("barcode=" + barcode + ", device=" + event.getDeviceId());
+               if (backlog.size() == MAX_BACKLOG) {
+                  Log.d("****** backlog full, barcode dropped");
+                  onBarcodeDropped(barcode);
+               } else {
+                  if (backlog.isEmpty()) { handler.post(dispatcher); }
+                  backlog.add(new Scan(barcode, event.getEventTime()));
+                  if (backlog.size() > 1) { onBacklogChanged(backlog.size()); }
+               }
             }
          }
          return true;
       }
    }
 
+   /**
+    * Called whenever the number of barcodes not yet delivered changes, except when a single barcode
+    * is appended to an empty backlog. If not overridden, the backlog is not shown.
+    *
+    * @param backlog
+    *       the number of barcodes not yet delivered.
+    */
+   protected void onBacklogChanged(int backlog) {}
+
+   /**
+    * Called instead of {@link #onBarcode(String) onBarcode} if the backlog is full.
+    * If not overridden, the barcode is silently dropped.
+    *
+    * @param barcode
+    *       the dropped barcode.
+    */
+   protected void onBarcodeDropped(String barcode) {}
+
    protected void onBarcode(String barcode) { /* if not overridden, ignore the barcode */ }
 
    @Override
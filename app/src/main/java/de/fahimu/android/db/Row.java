@@ -39,6 +39,19 @@ public abstract class Row {
       return values.getLong(BaseColumns._ID);
    }
 
+   /**
+    * Copies the values of this row to the specified new row, so that the copy may be changed independently.
+    *
+    * @param copy
+    *       a new row of the same class without any values.
+    * @return the specified {@code copy}.
+    */
+   @NonNull
+   protected final <R extends Row> R copyTo(@NonNull R copy) {
+      copy.values.cv.putAll(values.cv);
+      return copy;
+   }
+
    /* ============================================================================================================== */
 
    @NonNull
@@ -70,12 +83,12 @@ public abstract class Row {
    }
 
    public void delete() {
-      SQLite.delete(null, getTable(), BaseColumns._ID + "=?", values.getLong(BaseColumns._ID));
+      SQLite.deleteRow(getTable(), values.getLong(BaseColumns._ID));
    }
 
    @NonNull
    public final Row update() {
-      SQLite.update(getTable(), change, BaseColumns._ID + "=?", values.getLong(BaseColumns._ID));
+      SQLite.updateRow(getTable(), change, values.getLong(BaseColumns._ID));
       change.clear();
       return this;
    }
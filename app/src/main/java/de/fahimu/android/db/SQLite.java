@@ -9,11 +9,16 @@ package de.fahimu.android.db;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import de.fahimu.android.app.App;
 import de.fahimu.android.app.Log;
@@ -37,6 +42,10 @@ public final class SQLite {
     * implements {@link AutoCloseable}, so clients can make use of the new Java 7 {@code try}-with-resources statement.
     */
    public static final class Transaction implements AutoCloseable {
+      // Guarded by the database lock, which is held by the thread within the outermost transaction.
+      private static int     depth    = 0;          // the nesting depth of the open transactions
+      private static boolean rollback = false;      // true if a nested transaction has not been successful
+
       private boolean closed = false, successful = false;
 
       /**
@@ -45,6 +54,7 @@ public final class SQLite {
       public Transaction() {
          Log.d("BEGIN TRANSACTION");
          App.getDb().beginTransaction();
+         depth++;
       }
 
       /**
@@ -61,8 +71,12 @@ public final class SQLite {
       public void close() {
          if (!closed) {        // make close idempotent
             Log.d(successful ? "COMMIT TRANSACTION" : "ROLLBACK TRANSACTION");
+            rollback |= !successful;
+            boolean rolledBack = (--depth == 0) && rollback;
+            if (depth == 0) { rollback = false; }
             App.getDb().endTransaction();
             closed = true;
+            if (rolledBack) { rolledBack(); }
          }
       }
    }
@@ -213,6 +227,7 @@ public final class SQLite {
       if (db == null) { db = App.getDb(); }
       long oid = db.insertOrThrow(table, null, values.cv);
       if (oid == -1) { throw new SQLException("INSERT returned -1"); }
+      modified(table, oid);
       Log.d("oid=" + oid);
       return oid;
    }
@@ -281,8 +296,20 @@ public final class SQLite {
     * @return the number of updated rows.
     */
    public static int update(String table, Values values, String where, Object... args) {
+      return updateRows(table, values, 0, where, args);
+   }
+
+   /**
+    * Updates in the specified {@code table} the row with the specified {@code oid}, see {@link Row#update()}.
+    */
+   static void updateRow(String table, Values values, long oid) {
+      updateRows(table, values, oid, BaseColumns._ID + "=?", oid);
+   }
+
+   private static int updateRows(String table, Values values, long oid, String where, Object... args) {
       Log.d(App.format("UPDATE %s SET %s WHERE %s", table, values, bind(where, args)));
       int rows = App.getDb().update(table, values.cv, where, toStringArray(args));
+      modified(table, oid);
       Log.d(rows + " rows were updated");
       return rows;
    }
@@ -303,12 +330,125 @@ public final class SQLite {
     *       if an error occurred.
     */
    public static void delete(@Nullable SQLiteDatabase db, String table, String where, Object... args) {
+      deleteRows(db, table, 0, where, args);
+   }
+
+   /**
+    * Deletes in the specified {@code table} the row with the specified {@code oid}, see {@link Row#delete()}.
+    */
+   static void deleteRow(String table, long oid) {
+      deleteRows(null, table, oid, BaseColumns._ID + "=?", oid);
+   }
+
+   private static void deleteRows(@Nullable SQLiteDatabase db, String table, long oid, String where, Object... args) {
       Log.d(App.format("DELETE FROM %s WHERE %s", table, bind(where, args)));
       if (db == null) { db = App.getDb(); }
       int rows = db.delete(table, where, toStringArray(args));
+      modified(table, oid);
       Log.d(rows + " rows were deleted");
    }
 
+   /**
+    * Executes a single SQL statement that modifies the specified {@code table} and cannot be expressed by
+    * {@link #insert}, {@link #update} or {@link #delete}, e. g. {@code WITH ... INSERT INTO $table SELECT ...}.
+    *
+    * @param table
+    *       the table modified by the statement.
+    * @param sql
+    *       the SQL statement to be executed.
+    * @param args
+    *       the values, which will replace the {@code '?'} characters in {@code sql}.
+    * @throws SQLException
+    *       if an error occurred.
+    */
+   public static void modify(String table, @NonNull String sql, Object... args) {
+      Log.d(bind(sql, args));
+      App.getDb().execSQL(sql, toStringArray(args));
+      modified(table, 0);
+   }
+
+   /* ============================================================================================================== */
+   /*  Modification counters.                                                                                        */
+   /* ============================================================================================================== */
+
+   /**
+    * A hook called after rows of a table have been written by {@link #insert}, {@link #update}, {@link #delete}
+    * or {@link #modify}, so clients caching parts of the table can update just the written rows.
+    * The hook is called by the writing thread, possibly within a transaction, so it should only remember the
+    * written rows and must neither block nor query the database.
+    */
+   public interface WriteHook {
+      /**
+       * Called after rows of the table have been written.
+       *
+       * @param oid
+       *       the {@code _id} of the written row, or {@code 0} if the written rows are not known.
+       */
+      void onWritten(long oid);
+   }
+
+   private static final HashMap<String,Integer>        modCounts  = new HashMap<>();
+   private static final HashMap<String,List<WriteHook>> writeHooks = new HashMap<>();
+
+   private static void modified(String table, long oid) {
+      List<WriteHook> hooks;
+      synchronized (SQLite.class) {
+         Integer modCount = modCounts.get(table);
+         modCounts.put(table, modCount == null ? 1 : modCount + 1);
+         hooks = writeHooks.get(table);
+      }
+      if (hooks != null) {
+         for (WriteHook hook : hooks) { hook.onWritten(oid); }
+      }
+   }
+
+   /**
+    * Called after the outermost transaction has been rolled back. The rows written within the transaction are not
+    * known, so every table counts as modified and every hook is told that unknown rows have been written.
+    */
+   private static void rolledBack() {
+      List<WriteHook> hooks = new ArrayList<>();
+      synchronized (SQLite.class) {
+         for (Map.Entry<String,Integer> entry : modCounts.entrySet()) {
+            entry.setValue(entry.getValue() + 1);
+         }
+         for (List<WriteHook> tableHooks : writeHooks.values()) {
+            hooks.addAll(tableHooks);
+         }
+      }
+      for (WriteHook hook : hooks) { hook.onWritten(0); }
+   }
+
+   /**
+    * Adds a hook that is called after rows of the specified {@code table} have been written.
+    * Rows written by triggers or by {@link #execSQL} are not reported.
+    *
+    * @param table
+    *       the table name.
+    * @param hook
+    *       the hook.
+    */
+   public static synchronized void addWriteHook(String table, @NonNull WriteHook hook) {
+      List<WriteHook> hooks = writeHooks.get(table);
+      if (hooks == null) { writeHooks.put(table, hooks = new CopyOnWriteArrayList<>()); }
+      hooks.add(hook);
+   }
+
+   /**
+    * Returns how often {@link #insert}, {@link #update} or {@link #delete} has been called for the specified table.
+    * Clients caching the content of a table can compare this value with the value at the time of caching to
+    * detect whether the cache is stale. Rows written by triggers or by {@link #execSQL} are not counted.
+    * A rolled back transaction counts as one more modification of every table.
+    *
+    * @param table
+    *       the table name.
+    * @return how often the specified table has been modified.
+    */
+   public static synchronized int getModCount(String table) {
+      Integer modCount = modCounts.get(table);
+      return modCount == null ? 0 : modCount;
+   }
+
    /* ============================================================================================================== */
    /*  Utility methods.                                                                                              */
    /* ============================================================================================================== */
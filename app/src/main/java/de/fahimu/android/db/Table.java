@@ -134,7 +134,7 @@ public final class Table {
    }
 
    public Table addIndex() {
-      indices.add("CREATE INDEX " + table + "_" + column + " ON " + table + " (" + column + ");");
+      indices.add(createIndexSQL(table, column));
       return this;
    }
 
@@ -148,6 +148,14 @@ public final class Table {
 
    /* ============================================================================================================== */
 
+   private static String createIndexSQL(String table, String column) {
+      return "CREATE INDEX " + table + "_" + column + " ON " + table + " (" + column + ");";
+   }
+
+   public static void createIndex(SQLiteDatabase db, String table, String column) {
+      SQLite.execSQL(db, createIndexSQL(table, column));
+   }
+
    public static void dropIndex(SQLiteDatabase db, String table, String... columns) {
       for (String column : columns) {
          SQLite.drop(db, "INDEX", table, column);
@@ -69,6 +69,11 @@ public final class Trigger {
       return this;
    }
 
+   public Trigger addStatement(String statement) {
+      sql.append("\n").append(statement).append(";");
+      return this;
+   }
+
    public void create(SQLiteDatabase db) {
       String createTrigger = sql.append("\nEND;").toString();
       SQLite.execSQL(db, createTrigger);
@@ -13,6 +13,8 @@ import android.support.annotation.StringRes;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import de.fahimu.android.app.App;
 import de.fahimu.android.app.Log;
@@ -87,6 +89,46 @@ public final class ExternalFile {
 
    /* ============================================================================================================== */
 
+   /**
+    * Returns the first {@code count} bytes of this file, or less if the file is shorter.
+    * If the file does not exist or cannot be read, an empty array is returned.
+    *
+    * @param count
+    *       the maximum number of bytes to read.
+    * @return the first {@code count} bytes of this file.
+    */
+   public byte[] readHead(int count) {
+      return read(count, false);
+   }
+
+   /**
+    * Returns the last {@code count} bytes of this file, or less if the file is shorter.
+    * If the file does not exist or cannot be read, an empty array is returned.
+    *
+    * @param count
+    *       the maximum number of bytes to read.
+    * @return the last {@code count} bytes of this file.
+    */
+   public byte[] readTail(int count) {
+      return read(count, true);
+   }
+
+   private byte[] read(int count, boolean tail) {
+      if (!absolute.isFile()) { return new byte[0]; }
+      try (RandomAccessFile file = new RandomAccessFile(absolute, "r")) {
+         long length = file.length();
+         byte[] bytes = new byte[(int) Math.min(count, length)];
+         file.seek(tail ? length - bytes.length : 0);
+         file.readFully(bytes);
+         return bytes;
+      } catch (IOException e) {
+         Log.d("cannot read " + absolute + ": " + e.getMessage());
+         return new byte[0];
+      }
+   }
+
+   /* ============================================================================================================== */
+
    void scanFile() { scanFile(absolute); }
 
    private static void scanFile(File file) {
@@ -44,11 +44,63 @@ public final class IntCipher {
       return b.toString();
    }
 
-   /** The key for encryption and decryption. */
-   private static int[] KEY;
+   /**
+    * The key and the S-boxes derived from it. The fields are final, so a {@code KeySchedule} can be
+    * published to other threads without synchronization once it has been created.
+    */
+   private static final class KeySchedule {
+      /** The key for encryption and decryption. */
+      final int[] key = new int[1024 / 32];
+
+      /** The S-boxes. */
+      final int[] s0 = new int[256], s1 = new int[256], s2 = new int[256], s3 = new int[256];
+
+      KeySchedule(String hex) {
+         for (int p = 0, i = 0; i < key.length; i++) {
+            for (int j = 0; j < 8; j++, p++) {
+               key[i] = (key[i] << 4) | parseHexChar(hex.charAt(p));
+            }
+         }
+         int[][] s = { s0, s1, s2, s3 };
+         for (int k = 7, i = 0; i < 4; i++) {
+            for (int j = 0; j < 256; j++) {
+               s[i][j] = (j + k) ^ key[(k *= 13) & 31];
+            }
+         }
+      }
+
+      /** The Feistel round function. */
+      int f(int x) {
+         return ((s0[x >>> 24] + s1[x >>> 16 & 0xff]) ^ (s2[x >>> 8 & 0xff])) + s3[x & 0xff];
+      }
+
+      long encrypt(int plain) {
+         if (plain <= 0) {
+            throw new IllegalArgumentException("plain must be positive");
+         }
+         int i = 0, l = plain, r = -plain;
+         while (i < 32) {
+            r ^= key[i++];
+            l ^= f(r);
+            l ^= key[i++];
+            r ^= f(l);
+         }
+         return ((long) l << 32) | (r & 0xffffffffL);
+      }
 
-   /** The S-boxes. */
-   private static int[][] S;
+      int decrypt(long cipher) {
+         int i = 32, l = (int) (cipher >>> 32), r = (int) cipher;
+         while (i > 0) {
+            r ^= f(l);
+            l ^= key[--i];
+            l ^= f(r);
+            r ^= key[--i];
+         }
+         return (l != -r || l <= 0) ? 0 : l;
+      }
+   }
+
+   private static volatile KeySchedule schedule;
 
    private static int parseHexChar(char c) {
       if (c >= '0' && c <= '9') { return c - '0'; }
@@ -57,24 +109,19 @@ public final class IntCipher {
    }
 
    /**
-    * Initializes the KEY and the S-boxes.
+    * Returns the key schedule, which is created from the {@link Preference#CIPHER_KEY CIPHER_KEY} on first use.
     */
-   private synchronized static void initKeyAndSBoxes() {
-      if (KEY == null) {
-         String key = Preference.getNonNull(Preference.CIPHER_KEY).getValue();
-         KEY = new int[1024 / 32];
-         for (int p = 0, i = 0; i < KEY.length; i++) {
-            for (int j = 0; j < 8; j++, p++) {
-               KEY[i] = (KEY[i] << 4) | parseHexChar(key.charAt(p));
-            }
-         }
-         S = new int[4][256];
-         for (int k = 7, i = 0; i < 4; i++) {
-            for (int j = 0; j < 256; j++) {
-               S[i][j] = (j + k) ^ KEY[(k *= 13) & 31];
+   @NonNull
+   private static KeySchedule getKeySchedule() {
+      KeySchedule ks = schedule;
+      if (ks == null) {
+         synchronized (IntCipher.class) {
+            if ((ks = schedule) == null) {
+               schedule = ks = new KeySchedule(Preference.getNonNull(Preference.CIPHER_KEY).getValue());
             }
          }
       }
+      return ks;
    }
 
    /**
@@ -88,18 +135,7 @@ public final class IntCipher {
     *       if plain is not positive.
     */
    static long encrypt(int plain) {
-      if (plain <= 0) {
-         throw new IllegalArgumentException("plain must be positive");
-      }
-      initKeyAndSBoxes();
-      int i = 0, l = plain, r = -plain;
-      while (i < 32) {
-         r ^= KEY[i++];
-         l ^= f(r);
-         l ^= KEY[i++];
-         r ^= f(l);
-      }
-      return ((long) l << 32) | (r & 0xffffffffL);
+      return getKeySchedule().encrypt(plain);
    }
 
    /**
@@ -111,20 +147,26 @@ public final class IntCipher {
     * @return an integer with the decrypted value or 0.
     */
    static int decrypt(long cipher) {
-      initKeyAndSBoxes();
-      int i = 32, l = (int) (cipher >>> 32), r = (int) cipher;
-      while (i > 0) {
-         r ^= f(l);
-         l ^= KEY[--i];
-         l ^= f(r);
-         r ^= KEY[--i];
-      }
-      return (l != -r || l <= 0) ? 0 : l;
+      return getKeySchedule().decrypt(cipher);
    }
 
-   /** The Feistel round function. */
-   private static int f(int x) {
-      return ((S[0][x >>> 24] + S[1][x >>> 16 & 0xff]) ^ (S[2][x >>> 8 & 0xff])) + S[3][x & 0xff];
+   /**
+    * Encrypts the first {@code count} values of {@code plains} into {@code ciphers} like {@link #encrypt(int)}.
+    *
+    * @param plains
+    *       the integer values to encrypt. Must be greater than 0.
+    * @param ciphers
+    *       the array where to store the encrypted values.
+    * @param count
+    *       the number of values to encrypt.
+    * @throws IllegalArgumentException
+    *       if a value is not positive.
+    */
+   static void encrypt(@NonNull int[] plains, @NonNull long[] ciphers, int count) {
+      KeySchedule ks = getKeySchedule();
+      for (int i = 0; i < count; i++) {
+         ciphers[i] = ks.encrypt(plains[i]);
+      }
    }
 
-}
\ No newline at end of file
+}
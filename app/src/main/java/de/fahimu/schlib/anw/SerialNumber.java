@@ -20,6 +20,11 @@ import android.support.annotation.NonNull;
  */
 public final class SerialNumber {
 
+   /**
+    * The length of the strings returned by {@link #getCode128(int) getCode128}.
+    */
+   public static final int CODE128_LENGTH = 22;
+
    /**
     * Returns the value encoded as a 22-digit decimal string.
     * First the value is {@link IntCipher#encrypt(int) encrypted} and then converted into a
@@ -32,14 +37,36 @@ public final class SerialNumber {
     */
    @NonNull
    public static String getCode128(int serial) {
-      long cipher = IntCipher.encrypt(serial);
-      char[] buf = new char[22];
-      for (int p = 22; --p >= 0; ) {
+      char[] buf = new char[CODE128_LENGTH];
+      writeCode128(IntCipher.encrypt(serial), buf, 0);
+      return new String(buf);
+   }
+
+   /**
+    * Encodes the first {@code count} values of {@code serials} like {@link #getCode128(int) getCode128}
+    * and stores the 22 digits of {@code serials[i]} into {@code buf} starting at index {@code 22*i}.
+    *
+    * @param serials
+    *       the serials to encode.
+    * @param count
+    *       the number of serials to encode.
+    * @param buf
+    *       the buffer where to store the digits; its length must be at least {@code 22*count}.
+    */
+   public static void getCode128(@NonNull int[] serials, int count, @NonNull char[] buf) {
+      long[] ciphers = new long[count];
+      IntCipher.encrypt(serials, ciphers, count);
+      for (int i = 0; i < count; i++) {
+         writeCode128(ciphers[i], buf, CODE128_LENGTH * i);
+      }
+   }
+
+   private static void writeCode128(long cipher, char[] buf, int offset) {
+      for (int p = CODE128_LENGTH; --p >= 0; ) {
          char base = (p & 1) == 0 ? '2' : '0';
-         buf[p] = (char) (base + (cipher & 7));
+         buf[offset + p] = (char) (base + (cipher & 7));
          cipher >>>= 3;
       }
-      return new String(buf);
    }
 
    /**
@@ -51,15 +78,23 @@ public final class SerialNumber {
     * @return the integer value of the specified string or 0.
     */
    public static int parseCode128(String code128) {
-      if (code128.length() != 22) { return 0; }
+      long cipher = readCode128(code128);
+      return (cipher == 0) ? 0 : IntCipher.decrypt(cipher);
+   }
+
+   /**
+    * Returns the cipher encoded in the specified string or 0 if the string is malformed.
+    */
+   private static long readCode128(CharSequence code128) {
+      if (code128.length() != CODE128_LENGTH) { return 0; }
 
       long cipher = 0;
-      for (int p = 0; p < 22; p++) {
+      for (int p = 0; p < CODE128_LENGTH; p++) {
          int v = code128.charAt(p) - ((p & 1) == 0 ? '2' : '0');
          if (v < 0 || v > 7) { return 0; }
          cipher = (cipher << 3) | v;
       }
-      return IntCipher.decrypt(cipher);
+      return cipher;
    }
 
    /**
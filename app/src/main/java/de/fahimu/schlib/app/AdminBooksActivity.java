@@ -26,7 +26,7 @@ import java.util.List;
 
 import de.fahimu.android.app.ListView.Adapter;
 import de.fahimu.android.app.ListView.Filter;
-import de.fahimu.android.app.ListView.SearchableItem;
+import de.fahimu.android.app.ListView.LazySearchableItem;
 import de.fahimu.android.app.ListView.ViewHolder;
 import de.fahimu.android.app.Log;
 import de.fahimu.android.app.SearchString;
@@ -45,13 +45,18 @@ import de.fahimu.schlib.db.Label;
  */
 public final class AdminBooksActivity extends SchlibActivity {
 
-   private final class BookItem extends SearchableItem<Book> {
+   private final class BookItem extends LazySearchableItem<Book> {
       BookItem(@NonNull Book book) {
-         super(book,
-               book.getShelf(), book.getDisplayNumber(),
-               book.getTitle(), book.getAuthor(),
-               book.isVanished() ? book.getDisplayVanished() : book.getKeywords(),
-               book.getPublisher(), book.getDisplayMultilineISBNLabel());
+         super(book);
+      }
+
+      @NonNull
+      @Override
+      protected String[] buildColumns() {
+         return new String[] { row.getShelf(), row.getDisplayNumber(),
+               row.getTitle(), row.getAuthor(),
+               row.isVanished() ? row.getDisplayVanished() : row.getDisplayKeywords(),
+               row.getPublisher(), row.getDisplayMultilineISBNLabel() };
       }
    }
 
@@ -96,7 +101,7 @@ public final class AdminBooksActivity extends SchlibActivity {
       }
 
       @Override
-      protected ArrayList<Book> loadData() { return Book.getAll(); }
+      protected ArrayList<Book> loadData() { return Book.getAllForAdmin(); }
 
       @Override
       protected BookItem createItem(Book book) { return new BookItem(book); }
@@ -146,6 +151,7 @@ public final class AdminBooksActivity extends SchlibActivity {
    protected void onCreate(@Nullable Bundle savedInstanceState) {
       super.onCreate(savedInstanceState);
       booksAdapter = new BooksAdapter();
+      booksAdapter.preInflate(8);
    }
 
    @Override
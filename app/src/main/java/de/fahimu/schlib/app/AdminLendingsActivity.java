@@ -181,6 +181,7 @@ public final class AdminLendingsActivity extends SchlibActivity {
    protected void onCreate(@Nullable Bundle savedInstanceState) {
       super.onCreate(savedInstanceState);
       lendingsAdapter = new LendingsAdapter();
+      lendingsAdapter.preInflate(8);
       printList = findView(Button.class, R.id.admin_lendings_print_list);
       printDuns = findView(Button.class, R.id.admin_lendings_print_duns);
    }
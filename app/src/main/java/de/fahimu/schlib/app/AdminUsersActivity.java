@@ -26,7 +26,7 @@ import java.util.List;
 
 import de.fahimu.android.app.ListView.Adapter;
 import de.fahimu.android.app.ListView.Filter;
-import de.fahimu.android.app.ListView.SearchableItem;
+import de.fahimu.android.app.ListView.LazySearchableItem;
 import de.fahimu.android.app.ListView.ViewHolder;
 import de.fahimu.android.app.Log;
 import de.fahimu.android.app.SearchString;
@@ -44,9 +44,15 @@ import de.fahimu.schlib.db.User;
  */
 public final class AdminUsersActivity extends SchlibActivity {
 
-   private final class UserItem extends SearchableItem<User> {
+   private final class UserItem extends LazySearchableItem<User> {
       UserItem(@NonNull User user) {
-         super(user, user.getDisplay(), user.getDisplayIdcard());
+         super(user);
+      }
+
+      @NonNull
+      @Override
+      protected String[] buildColumns() {
+         return new String[] { row.getDisplay(), row.getDisplayIdcard() };
       }
    }
 
@@ -131,6 +137,7 @@ public final class AdminUsersActivity extends SchlibActivity {
    protected void onCreate(@Nullable Bundle savedInstanceState) {
       super.onCreate(savedInstanceState);
       usersAdapter = new UsersAdapter();
+      usersAdapter.preInflate(12);
    }
 
    @Override
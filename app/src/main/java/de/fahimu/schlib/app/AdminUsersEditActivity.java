@@ -163,7 +163,7 @@ public final class AdminUsersEditActivity extends SchlibActivity {
          currUser = User.getNonNull(getIntent().getLongExtra("uid", -1L));
 
          self = Use.getLoggedInNonNull().getUser().equals(prevUser);
-         hasBooks = Lending.getByUser(prevUser, true).size() > 0;
+         hasBooks = prevUser.getIssuedCount() > 0;
 
          userDisplay = findView(TextView.class, R.id.admin_users_edit_user_display);
          lendingsAdapter = new LendingsAdapter();
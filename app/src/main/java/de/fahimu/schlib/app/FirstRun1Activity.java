@@ -96,9 +96,7 @@ public final class FirstRun1Activity extends SchlibActivity {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          try (SQLite.Transaction transaction = new SQLite.Transaction()) {
             Idcard.createOnePage();
-            for (int i = 0; i < 3; i++) {
-               Label.createOnePage();
-            }
+            Label.createPages(3);
             Preference.insert(Preference.CIPHER_KEY, IntCipher.createKey());
             Preference.getNonNull(Preference.FIRST_RUN).setValue("2").update();
             Use.login(User.insertAdminOrTutor(Role.ADMIN, name2, name1, Idcard.getNonNull(Idcard.MIN)));
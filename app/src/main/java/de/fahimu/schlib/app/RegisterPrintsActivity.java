@@ -23,6 +23,8 @@ import android.widget.TextView;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -40,7 +42,7 @@ import de.fahimu.schlib.db.Label;
 import de.fahimu.schlib.db.Preference;
 import de.fahimu.schlib.db.Serial;
 import de.fahimu.schlib.pdf.Document;
-import de.fahimu.schlib.pdf.Document.WriterListener;
+import de.fahimu.schlib.pdf.Document.ProgressListener;
 import de.fahimu.schlib.pdf.Idcards85x54;
 import de.fahimu.schlib.pdf.Labels70x36;
 import de.fahimu.schlib.share.FileType;
@@ -284,15 +286,24 @@ public final class RegisterPrintsActivity extends SchlibActivity {
    private void writeDocumentsAsync() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          if (pagesToWrite.get() > 0) {
-            Document.writeAsync(taskRegistry, new WriterListener() {
+            Document.writeAsync(taskRegistry, new ProgressListener() {
                private long lastUpdateTime = 0;
+               private final HashMap<Document,Long> remainingMillis = new HashMap<>();
 
                @Override
                public void onPageWrite() {
-                  int left = pagesToWrite.decrementAndGet();
+                  pagesToWrite.decrementAndGet();
+               }
+
+               @Override
+               public void onProgress(Document document, int pages, long remaining) {
+                  remainingMillis.put(document, remaining);
+                  int left = pagesToWrite.get();
                   if (left >= 2 && SystemClock.uptimeMillis() > lastUpdateTime + 500) {
                      lastUpdateTime = SystemClock.uptimeMillis();
-                     message.setText(App.getStr(R.string.register_prints_writing_pdf, left));
+                     long seconds = (Collections.max(remainingMillis.values()) + 999) / 1000;
+                     message.setText(seconds <= 0 ? App.getStr(R.string.register_prints_writing_pdf, left) :
+                                     App.getStr(R.string.register_prints_writing_pdf_eta, left, seconds));
                   }
                }
 
@@ -13,6 +13,7 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StringRes;
+import android.support.v7.app.ActionBar;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View.OnClickListener;
@@ -124,6 +125,21 @@ abstract class SchlibActivity extends ScannerActivity {
 
    /* ============================================================================================================== */
 
+   @Override
+   protected void onBacklogChanged(int backlog) {
+      ActionBar actionBar = getSupportActionBar();
+      if (actionBar != null) {
+         actionBar.setSubtitle(backlog == 0 ? null : App.getStr(R.string.action_backlog, backlog));
+      }
+   }
+
+   @Override
+   protected void onBarcodeDropped(String barcode) {
+      showErrorSnackbar(R.string.snackbar_error_backlog_full);
+   }
+
+   /* ============================================================================================================== */
+
    final void showErrorSnackbar(@StringRes int resId, Object... formatArgs) {
       App.playSound(R.raw.horn);
       showSnackbar(android.R.color.holo_red_dark, resId, formatArgs);
@@ -23,10 +23,8 @@ import android.widget.TextView;
 
 
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Set;
 
 import de.fahimu.android.app.ListView.Adapter;
 import de.fahimu.android.app.ListView.Filter;
@@ -34,8 +32,10 @@ import de.fahimu.android.app.ListView.Item;
 import de.fahimu.android.app.ListView.ViewHolder;
 import de.fahimu.android.app.Log;
 import de.fahimu.schlib.anw.ISBN;
+import de.fahimu.schlib.db.BarcodeResolver;
+import de.fahimu.schlib.db.BarcodeResolver.Resolution;
 import de.fahimu.schlib.db.Book;
-import de.fahimu.schlib.db.Label;
+import de.fahimu.schlib.db.Stocktaking;
 
 import static de.fahimu.android.app.ListView.Adapter.RELOAD_DATA;
 import static de.fahimu.android.app.ListView.Adapter.SHOW_DELAYED;
@@ -92,28 +92,43 @@ public final class StocktakingBooksActivity extends SchlibActivity implements On
       }
 
       @Override
-      protected void onUpdated(int flags, List<BookItem> data) { }
+      protected void onUpdated(int flags, List<BookItem> data) {
+         if (getItemCount() == 0 && stocktaking != null && stocktaking.getShelf().equals(selectedShelf)) {
+            stocktaking.finish();      // all books of the shelf have been seen or marked as vanished
+         }
+      }
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
 
    /**
-    * Shows only books from the {@link #selectedShelf} that are not an element of the {@link #scannedBooks} set.
+    * Shows only books from the {@link #selectedShelf} that have not been seen by the {@link #stocktaking}.
     */
    private final class BookItemFilter implements Filter<BookItem> {
-      /** Clone the {@link #scannedBooks} set to prevent {@link ConcurrentModificationException}s */
-      private final String    shelf = selectedShelf;
-      private final Set<Long> books = new HashSet<>(scannedBooks);
+      /** Copy the bitmap of seen books, because it is modified by the main thread */
+      private final String shelf = selectedShelf;
+      private final BitSet seen  = (stocktaking == null) ? new BitSet() : stocktaking.getSeen();
 
       @Override
       public boolean matches(BookItem item) {
-         return item.row.getShelf().equals(shelf) && !books.contains(item.rid);
+         return item.row.getShelf().equals(shelf) && !seen.get((int) item.row.getBid());
       }
    }
 
    private String selectedShelf;
 
-   private final Set<Long> scannedBooks = new HashSet<>();     // OID of scanned books
+   /** The persisted stocktaking of the {@link #selectedShelf}, so stocktaking can be continued after a restart. */
+   private Stocktaking stocktaking;
+
+   /**
+    * Saves the stocktaking of the previously selected shelf and opens the stocktaking of the specified shelf.
+    */
+   private void selectShelf(@NonNull String shelf) {
+      if (stocktaking != null) { stocktaking.checkpoint(); }
+      selectedShelf = shelf;
+      stocktaking = shelf.isEmpty() ? null : Stocktaking.open(shelf);
+      booksAdapter.updateAsync(0, new BookItemFilter());
+   }
 
    /* ============================================================================================================== */
 
@@ -151,7 +166,7 @@ public final class StocktakingBooksActivity extends SchlibActivity implements On
    protected final void onPermissionGranted() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          selectedShelf = "";
-         scannedBooks.clear();
+         stocktaking = null;
          booksAdapter.updateAsync(RELOAD_DATA);
       }
    }
@@ -160,25 +175,27 @@ public final class StocktakingBooksActivity extends SchlibActivity implements On
    protected final void onPause() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          super.onPause();
+         if (stocktaking != null) { stocktaking.checkpoint(); }
       }
    }
 
    @Override
    protected void onBarcode(String barcode) {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         Resolution resolution = BarcodeResolver.resolve(barcode);
          if (barcode.length() == ISBN.LENGTH) {
-            ISBN isbn = ISBN.parse(barcode);
-            if (isbn == null) {
+            if (!resolution.isbn) {
                showErrorSnackbar(R.string.snackbar_error_not_a_isbn);
+            } else if (resolution.ambiguous) {
+               showErrorSnackbar(R.string.stocktaking_books_snackbar_error_isbn_ambiguous);
             } else {
-               onBookScanned(Book.getIdentifiedByISBN(isbn));
+               onBookScanned(resolution.book);
             }
          } else {
-            Label label = Label.parse(barcode);
-            if (label == null) {
+            if (resolution.book == null && resolution.label == null) {
                showErrorSnackbar(R.string.snackbar_error_not_a_label);
             } else {
-               onBookScanned(label.isUsed() ? Book.getByLabel(label) : null);
+               onBookScanned(resolution.book);
             }
          }
       }
@@ -190,16 +207,16 @@ public final class StocktakingBooksActivity extends SchlibActivity implements On
       } else if (!book.getShelf().equals(selectedShelf)) {
          showErrorSnackbar(R.string.stocktaking_books_snackbar_error_wrong_shelf, book.getShelf());
       } else {
-         boolean added = scannedBooks.add(book.getOid());
+         boolean added = stocktaking.add(book);
          @StringRes int resId = added ? R.string.stocktaking_books_snackbar_info_scanned :
                                 R.string.stocktaking_books_snackbar_info_already_scanned;
          showInfoSnackbar(resId, book.getDisplayShelfNumber());
          if (book.isVanished()) {
             book.setVanished(null).update();    // book re-emerged magically after being set to vanished
             booksAdapter.updateAsync(RELOAD_DATA, new BookItemFilter());
-         } else {
+         } else if (added) {
             booksAdapter.setSelection(book.getOid());
-            booksAdapter.updateAsync(SHOW_DELAYED, new BookItemFilter());
+            booksAdapter.removeAsync(SHOW_DELAYED, book.getOid(), new BookItemFilter());
          }
       }
    }
@@ -208,14 +225,12 @@ public final class StocktakingBooksActivity extends SchlibActivity implements On
 
    @Override
    public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-      selectedShelf = (String) parent.getItemAtPosition(position);
-      booksAdapter.updateAsync(0, new BookItemFilter());
+      selectShelf((String) parent.getItemAtPosition(position));
    }
 
    @Override
    public void onNothingSelected(AdapterView<?> parent) {
-      selectedShelf = "";
-      booksAdapter.updateAsync(0, new BookItemFilter());
+      selectShelf("");
    }
 
    public void onListItemClicked(@NonNull View view) {
@@ -30,7 +30,6 @@ import de.fahimu.android.app.TaskRegistry;
 import de.fahimu.android.app.scanner.NoFocusDialog;
 import de.fahimu.android.app.scanner.NoFocusDialog.ButtonListener;
 import de.fahimu.schlib.db.Idcard;
-import de.fahimu.schlib.db.Lending;
 import de.fahimu.schlib.db.User;
 import de.fahimu.schlib.db.User.Role;
 import de.fahimu.schlib.pdf.Document;
@@ -201,8 +200,8 @@ public final class StocktakingUsersActivity extends SchlibActivity {
    }
 
    private void deleteScanned(@NonNull User user, int flags) {
-      // user.hasBooks() can only be called on list items, not on scanned Users
-      if (Lending.getByUser(user, true).size() > 0) {
+      // user.hasBooks() can only be called on list items, scanned Users read the counter of open lendings
+      if (user.getIssuedCount() > 0) {
          showInfoSnackbar(R.string.stocktaking_users_snackbar_info_stocked, user.getDisplayIdcard());
          user.setIdcard(null).update();      // set idcard to stocked
       } else {
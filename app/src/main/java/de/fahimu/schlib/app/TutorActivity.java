@@ -8,11 +8,15 @@ package de.fahimu.schlib.app;
 
 import android.animation.Animator;
 import android.graphics.drawable.ColorDrawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.RawRes;
+import android.support.annotation.StringRes;
 import android.view.View;
 import android.view.animation.AccelerateInterpolator;
 import android.view.animation.CycleInterpolator;
@@ -24,16 +28,25 @@ import android.widget.TextView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.fahimu.android.app.Log;
 import de.fahimu.android.app.SmartAnimator;
-import de.fahimu.schlib.anw.ISBN;
+import de.fahimu.android.app.scanner.ScanTrace;
+import de.fahimu.android.app.scanner.ScanTrace.Stage;
+import de.fahimu.android.share.ExternalFile;
+import de.fahimu.schlib.db.BarcodeResolver;
+import de.fahimu.schlib.db.BarcodeResolver.Resolution;
 import de.fahimu.schlib.db.Book;
 import de.fahimu.schlib.db.Idcard;
 import de.fahimu.schlib.db.Label;
 import de.fahimu.schlib.db.Lending;
+import de.fahimu.schlib.db.Lending.Returned;
 import de.fahimu.schlib.db.Use;
 import de.fahimu.schlib.db.User;
+import de.fahimu.schlib.share.FileType;
 
 /**
  * Issue or take back books from users.
@@ -62,9 +75,11 @@ public final class TutorActivity extends SchlibActivity {
    private TextView message1;
    private TextView message2;
 
-   private SmartAnimator initAnimator, scanAnimator, beepAnimator, showAnimator, stopAnimator;
+   private SmartAnimator initAnimator, scanAnimator, acceptAnimator, beepAnimator, showAnimator, stopAnimator;
 
-   private Book scannedBook;
+   private Book scannedBook;        // accessed by the worker thread only
+
+   private boolean cardExpected;    // the main thread's view of scannedBook != null
 
    /* ============================================================================================================== */
 
@@ -129,6 +144,20 @@ public final class TutorActivity extends SchlibActivity {
       };
    }
 
+   /**
+    * Flashes the scanner as soon as a barcode was delivered, before it has been processed by the worker thread.
+    */
+   private void createAcceptAnimator() {
+      acceptAnimator = new SmartAnimator("AcceptAnimator", scan, -1) {
+         @Override
+         protected void create() {
+            Animator b1 = multiAnimator(0, alphaSetter(scan0, 0f), alphaSetter(scan1, 1f));    // blue on
+            Animator b0 = multiAnimator(80, alphaSetter(scan0, 1f), alphaSetter(scan1, 0f));   // blue off
+            getAnimator().playSequentially(b1, b0);
+         }
+      };
+   }
+
    private void createBeepAnimator() {
       beepAnimator = new SmartAnimator("BeepAnimator", scan, -1) {
          @Override
@@ -150,7 +179,7 @@ public final class TutorActivity extends SchlibActivity {
          protected void onAnimationEnd() {
             if (isCancelled()) {
                item0.setTranslationX(0f);
-            } else if (scannedBook == null) {
+            } else if (!cardExpected) {
                selectBook(); showAnimator.start();
             } else {
                selectCard(); showAnimator.start();
@@ -229,6 +258,7 @@ public final class TutorActivity extends SchlibActivity {
 
       createInitAnimator();
       createScanAnimator();
+      createAcceptAnimator();
       createBeepAnimator();
       createShowAnimator();
       createStopAnimator();
@@ -252,8 +282,18 @@ public final class TutorActivity extends SchlibActivity {
    protected void onPermissionGranted() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          initAnimator.start();
-         scannedBook = null;
+         cardExpected = false;
+         worker.execute(new Runnable() {
+            @Override
+            public void run() { scannedBook = null; }
+         });
          message1.setText(""); message2.setText("");
+         for (Feedback feedback : heldFeedbacks) {
+            // a scanned book waiting for an idcard has just been forgotten, any other feedback is shown
+            if (!feedback.cardExpected) { showFeedback(feedback); }
+         }
+         heldFeedbacks.clear();
+         holdFeedback = false;
       }
    }
 
@@ -263,131 +303,273 @@ public final class TutorActivity extends SchlibActivity {
          super.onPause();
          initAnimator.cancel();
          scanAnimator.cancel();
+         acceptAnimator.cancel();
          beepAnimator.cancel();
          showAnimator.cancel();
          stopAnimator.cancel();
+         holdFeedback = true;
+         for (ScanTask task : scanTasks) {
+            task.drop();
+         }
+         if (BuildConfig.DEBUG && ScanTrace.getCount() > 0) {
+            worker.execute(new Runnable() {
+               @Override
+               public void run() {
+                  ScanTrace.log();
+                  ScanTrace.export(new ExternalFile(FileType.TRACES, "scan_latency.txt"));
+               }
+            });
+         }
       }
    }
 
    /* ============================================================================================================== */
 
+   /**
+    * Processes the scans one after the other on a worker thread, so all database accesses of a scan are done
+    * off the main thread and the scans are processed in the order they were delivered.
+    */
+   private static final Executor worker = Executors.newSingleThreadExecutor();
+
+   /**
+    * The feedback to a scan, determined by a {@link ScanTask} on the worker thread and shown on the main thread.
+    */
+   private static final class Feedback {
+      @RawRes
+      int sound = 0;
+      @StringRes
+      int resId1 = 0, resId2 = 0;
+      int modeIssue, modeReturn;
+      @StringRes
+      int resId;
+      Object[] formatArgs;
+      boolean stop = false, beep = false, beepCard = false;
+      boolean cardExpected;
+
+      void display(int modeIssue, int modeReturn, @StringRes int resId, Object... formatArgs) {
+         this.modeIssue = modeIssue; this.modeReturn = modeReturn;
+         this.resId = resId; this.formatArgs = formatArgs;
+      }
+   }
+
    @Override
    public void onBarcode(String barcode) {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          message1.setText(""); message2.setText("");
-         Idcard idcard = Idcard.parse(barcode);
-         if (idcard != null) {
-            onIdcardScanned(idcard);
-         } else {
-            ISBN isbn = ISBN.parse(barcode);
-            if (isbn != null) {
-               onIsbnScanned(isbn);
+         acceptAnimator.start();
+         ScanTask task = new ScanTask(barcode, getScanTrace());
+         scanTasks.add(task);
+         task.executeOnExecutor(worker);
+      }
+   }
+
+   // The following fields are accessed by the main thread only.
+
+   /** The scan tasks whose feedback has not been shown yet. */
+   private final List<ScanTask> scanTasks = new ArrayList<>();
+
+   /** True from {@link #onPause()} until the scan state is reset by {@link #onPermissionGranted()}. */
+   private boolean holdFeedback = false;
+
+   /** The feedback of scans finished while {@link #holdFeedback} is true, shown after resuming. */
+   private final List<Feedback> heldFeedbacks = new ArrayList<>();
+
+   /**
+    * Resolves a scanned barcode and issues or returns the book on the worker thread.
+    * {@link #scannedBook} is only accessed by the worker thread. If the activity is paused, a task which has not
+    * yet started is dropped. A started task may already have issued or returned a book, so its feedback is held
+    * back and shown after resuming.
+    * The resolved user and book are read from the database for this scan only, so they may be written here.
+    */
+   private final class ScanTask extends AsyncTask<Void,Void,Feedback> {
+      private final String        barcode;
+      private final ScanTrace     trace;
+      private final Feedback      feedback = new Feedback();
+      private final AtomicBoolean claimed  = new AtomicBoolean();   // by the worker to start or by drop()
+
+      ScanTask(String barcode, ScanTrace trace) {
+         this.barcode = barcode;
+         this.trace = trace;
+      }
+
+      /**
+       * Drops this task if it has not been started yet by the worker thread.
+       */
+      @MainThread
+      void drop() {
+         claimed.compareAndSet(false, true);
+      }
+
+      @Override
+      protected Feedback doInBackground(Void... voids) {
+         if (!claimed.compareAndSet(false, true)) {
+            return null;            // dropped by onPause
+         }
+         try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+            Resolution resolution = BarcodeResolver.resolve(barcode, trace);
+            if (resolution.user != null || resolution.idcard != null) {
+               onIdcardScanned(resolution.idcard, resolution.user);
+            } else if (resolution.ambiguous) {
+               setError(R.string.tutor_message_1_isbn_ambiguous, R.string.tutor_message_2_please_return_book);
+            } else if (resolution.isbn) {
+               onIsbnScanned(resolution.book, resolution.lendings);
+            } else if (resolution.book != null || resolution.label != null) {
+               onLabelScanned(resolution.label, resolution.book, resolution.lendings);
             } else {
-               Label label = Label.parse(barcode);
-               if (label != null) {
-                  onLabelScanned(label);
-               } else {
-                  setError(R.string.tutor_message_1_barcode_unknown, R.string.tutor_message_2_only_idcard_or_book);
-               }
+               setError(R.string.tutor_message_1_barcode_unknown, R.string.tutor_message_2_only_idcard_or_book);
             }
+            feedback.cardExpected = (scannedBook != null);
+            return feedback;
          }
       }
-   }
 
-   private void onIdcardScanned(Idcard idcard) {
-      if (scannedBook == null) {
-         setError(R.string.tutor_message_1_expected_book, R.string.tutor_message_2_book_before_user);
-      } else {
-         if (!idcard.isUsed()) {
-            if (idcard.isLost()) {
-               setError(R.string.login_message_1_lost, R.string.login_message_2_please_return_idcard);
-            } else if (idcard.isPrinted()) {
-               setError(R.string.login_message_1_printed, R.string.login_message_2_please_return_idcard);
-            } else {   // not used, not lost, not printed => idcard is stocked
-               setError(R.string.login_message_1_stocked, R.string.login_message_2_please_return_idcard);
-            }
-            setDisplay(3, 0, R.string.tutor_progress_idcard_not_used);
+      @Override
+      protected void onPostExecute(@Nullable Feedback feedback) {
+         scanTasks.remove(this);
+         if (feedback == null) {
+            Log.d("dropped scan " + barcode);
+         } else if (holdFeedback) {
+            heldFeedbacks.add(feedback);
          } else {
-            User user = User.getByIdcard(idcard);
-            ArrayList<Lending> lendings = Lending.getByUser(user, true);
-            if (lendings.size() == user.getNbooks()) {
-               App.playSound(R.raw.horn);
-               String lentBook = lendings.get(0).getBook().getDisplay();
-               if (user.getNbooks() == 1) {
-                  setDisplay(3, 0, R.string.tutor_progress_limit_1, user.getDisplay(), lentBook);
-               } else {
-                  setDisplay(3, 0, R.string.tutor_progress_limit_n, user.getDisplay(), lentBook, lendings.size());
+            showFeedback(feedback);
+         }
+         trace.finish();
+      }
+
+      /**
+       * Called if an idcard was scanned.
+       *
+       * @param idcard
+       *       the idcard if it is not used, otherwise {@code null}.
+       * @param user
+       *       the user of the idcard if it is used, otherwise {@code null}.
+       */
+      private void onIdcardScanned(@Nullable Idcard idcard, @Nullable User user) {
+         if (scannedBook == null) {
+            setError(R.string.tutor_message_1_expected_book, R.string.tutor_message_2_book_before_user);
+         } else {
+            if (user == null) {
+               if (idcard.isLost()) {
+                  setError(R.string.login_message_1_lost, R.string.login_message_2_please_return_idcard);
+               } else if (idcard.isPrinted()) {
+                  setError(R.string.login_message_1_printed, R.string.login_message_2_please_return_idcard);
+               } else {   // not used, not lost, not printed => idcard is stocked
+                  setError(R.string.login_message_1_stocked, R.string.login_message_2_please_return_idcard);
                }
-               stopAnimator.start();
+               feedback.display(3, 0, R.string.tutor_progress_idcard_not_used);
             } else {
-               Lending.issueBook(scannedBook, user);
-               App.playSound(R.raw.bell_issue);
-               setDisplay(1, 0, R.string.tutor_progress_issue_done, scannedBook.getDisplay(), user.getDisplay());
+               int issuedCount = user.getIssuedCount();
+               if (issuedCount >= user.getNbooks()) {
+                  feedback.sound = R.raw.horn;
+                  // the lendings are only read to display a lent book if the limit is reached
+                  String lentBook = Lending.getByUser(user, true).get(0).getBook().getDisplay();
+                  if (user.getNbooks() == 1) {
+                     feedback.display(3, 0, R.string.tutor_progress_limit_1, user.getDisplay(), lentBook);
+                  } else {
+                     feedback.display(3, 0, R.string.tutor_progress_limit_n, user.getDisplay(), lentBook,
+                           issuedCount);
+                  }
+                  feedback.stop = true;
+               } else {
+                  Lending.issueBook(scannedBook, user);
+                  trace.mark(Stage.WRITE);
+                  feedback.sound = R.raw.bell_issue;
+                  feedback.display(1, 0, R.string.tutor_progress_issue_done,
+                        scannedBook.getDisplay(), user.getDisplay());
+               }
             }
+            scannedBook = null;
+            feedback.beep = true; feedback.beepCard = true;
          }
-         scannedBook = null;
-         selectCard();
-         beepAnimator.start();
       }
-   }
 
-   private void onIsbnScanned(ISBN isbn) {
-      Book book = Book.getIdentifiedByISBN(isbn);
-      if (book == null) {
-         setError(R.string.tutor_message_1_book_not_registered, R.string.tutor_message_2_please_return_book);
-      } else {
-         onBookScanned(book);
+      private void onIsbnScanned(@Nullable Book book, List<Lending> lendings) {
+         if (book == null) {
+            setError(R.string.tutor_message_1_book_not_registered, R.string.tutor_message_2_please_return_book);
+         } else {
+            onBookScanned(book, lendings);
+         }
       }
-   }
 
-   private void onLabelScanned(Label label) {
-      if (!label.isUsed()) {
-         if (label.isLost()) {
-            setError(R.string.tutor_message_1_label_lost, R.string.tutor_message_2_please_return_book);
+      /**
+       * Called if a label was scanned.
+       *
+       * @param label
+       *       the label if it is not used, otherwise {@code null}.
+       * @param book
+       *       the book of the label if it is used, otherwise {@code null}.
+       * @param lendings
+       *       the currently issued lendings of the book.
+       */
+      private void onLabelScanned(@Nullable Label label, @Nullable Book book, List<Lending> lendings) {
+         if (book == null) {
+            if (label.isLost()) {
+               setError(R.string.tutor_message_1_label_lost, R.string.tutor_message_2_please_return_book);
+            } else {
+               setError(R.string.tutor_message_1_label_not_used, R.string.tutor_message_2_please_return_book);
+            }
          } else {
-            setError(R.string.tutor_message_1_label_not_used, R.string.tutor_message_2_please_return_book);
+            onBookScanned(book, lendings);
          }
-      } else {
-         onBookScanned(Book.getByLabel(label));
       }
-   }
 
-   private void onBookScanned(@NonNull Book book) {
-      if (scannedBook != null) {
-         setError(R.string.tutor_message_1_expected_user, R.string.tutor_message_2_book_before_user);
-      } else {
-         if (book.isVanished()) {
-            book.setVanished(null).update();    // book re-emerged magically after being set to vanished
-         }
-         ArrayList<Lending> lendings = Lending.getByBook(book, true);
-         if (lendings.isEmpty()) {
-            App.playSound(R.raw.bell);
-            setDisplay(2, 0, R.string.tutor_progress_issue_init, book.getDisplay());
-            scannedBook = book;
+      private void onBookScanned(@NonNull Book book, List<Lending> lendings) {
+         if (scannedBook != null) {
+            setError(R.string.tutor_message_1_expected_user, R.string.tutor_message_2_book_before_user);
          } else {
-            App.playSound(R.raw.bell_return);
-            User user = lendings.get(0).getUser();
-            int delay = lendings.get(0).returnBook();
-            if (delay < 2) {
-               setDisplay(0, 1, R.string.tutor_progress_return_in_time, book.getDisplay(), user.getDisplay());
+            if (book.isVanished()) {
+               book.setVanished(null).update();    // book re-emerged magically after being set to vanished
+               trace.mark(Stage.WRITE);
+            }
+            // the issued lending is queried again and returned in one transaction, by the bid of the book
+            Returned returned = lendings.isEmpty() ? null : Lending.returnBook(book);
+            if (!lendings.isEmpty()) { trace.mark(Stage.WRITE); }
+            if (returned == null) {
+               feedback.sound = R.raw.bell;
+               feedback.display(2, 0, R.string.tutor_progress_issue_init, book.getDisplay());
+               scannedBook = book;
             } else {
-               setDisplay(0, 2, R.string.tutor_progress_return_belated, book.getDisplay(), user.getDisplay(), delay);
+               feedback.sound = R.raw.bell_return;
+               String bookDisplay = returned.book.getDisplay(), userDisplay = returned.user.getDisplay();
+               if (returned.delay < 2) {
+                  feedback.display(0, 1, R.string.tutor_progress_return_in_time, bookDisplay, userDisplay);
+               } else {
+                  feedback.display(0, 2, R.string.tutor_progress_return_belated, bookDisplay, userDisplay,
+                        returned.delay);
+               }
             }
+            feedback.beep = true; feedback.beepCard = false;
+         }
+      }
+
+      private void setError(@StringRes int resId1, @StringRes int resId2) {
+         feedback.sound = R.raw.horn;
+         feedback.stop = true;
+         feedback.resId1 = resId1;
+         feedback.resId2 = resId2;
+         if (scannedBook == null) {
+            feedback.display(0, 0, R.string.tutor_progress_please_scan_book);
+         } else {
+            feedback.display(2, 0, R.string.tutor_progress_please_scan_card);
          }
-         selectBook();
-         beepAnimator.start();
       }
    }
 
-   private void setError(int resId1, int resId2) {
-      App.playSound(R.raw.horn);
-      stopAnimator.start();
-      message1.setText(resId1);
-      message2.setText(resId2);
-      if (scannedBook == null) {
-         setDisplay(0, 0, R.string.tutor_progress_please_scan_book);
-      } else {
-         setDisplay(2, 0, R.string.tutor_progress_please_scan_card);
+   /**
+    * Shows the specified {@code feedback} on the main thread.
+    */
+   private void showFeedback(@NonNull Feedback feedback) {
+      cardExpected = feedback.cardExpected;
+      if (feedback.sound != 0) { App.playSound(feedback.sound); }
+      if (feedback.stop) { stopAnimator.start(); }
+      if (feedback.resId1 != 0) {
+         message1.setText(feedback.resId1);
+         message2.setText(feedback.resId2);
+      }
+      setDisplay(feedback.modeIssue, feedback.modeReturn, feedback.resId, feedback.formatArgs);
+      if (feedback.beep) {
+         if (feedback.beepCard) { selectCard(); } else { selectBook(); }
+         beepAnimator.start();
       }
    }
 
@@ -0,0 +1,362 @@
+/*
+ * BarcodeResolver.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.schlib.db;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LongSparseArray;
+import android.util.SparseLongArray;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import de.fahimu.android.app.Log;
+import de.fahimu.android.app.scanner.ScanTrace;
+import de.fahimu.android.app.scanner.ScanTrace.Stage;
+import de.fahimu.android.db.SQLite;
+import de.fahimu.android.db.SQLite.WriteHook;
+import de.fahimu.schlib.anw.ISBN;
+import de.fahimu.schlib.anw.SerialNumber;
+
+/**
+ * Resolves scanned barcodes to users and books together with the currently issued lendings of books.
+ * The resolver keeps in-memory indexes, which map idcards, labels and ISBNs to the users and books
+ * and which map the row ids of the issued lendings to the row ids of their books.
+ * So the database is only queried if a scanned book is issued; the issued books of a user are counted by
+ * {@link User#getIssuedCount()} if necessary. The indexes are kept current by {@link WriteHook}s: a written row
+ * is re-read and its entries are updated before the next barcode is resolved; only if the written rows are
+ * unknown, the index is rebuilt. The resolved users and books are copies, so they may be changed by the caller.
+ * Barcodes which neither resolve to a user nor to a book are kept in a negative cache.
+ * <p> All methods are synchronized, so the resolver may be used by the main thread and a worker thread. </p>
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+public final class BarcodeResolver {
+
+   /**
+    * The result of {@link #resolve(String)}. At most one of {@link #user}, {@link #book},
+    * {@link #idcard} and {@link #label} is not {@code null}.
+    */
+   public static final class Resolution {
+      /** The user if the barcode is the idcard of a user. */
+      @Nullable
+      final public User user;
+
+      /** The book if the barcode is the label of a book or the ISBN of exactly one book without a label. */
+      @Nullable
+      final public Book book;
+
+      /** The idcard if the barcode is an idcard not used by any user. */
+      @Nullable
+      final public Idcard idcard;
+
+      /** The label if the barcode is a label not used by any book. */
+      @Nullable
+      final public Label label;
+
+      /** {@code true} if the barcode is a valid ISBN, regardless whether a book was found. */
+      final public boolean isbn;
+
+      /** {@code true} if the barcode is the ISBN of more than one book without a label, so {@link #book} is null. */
+      final public boolean ambiguous;
+
+      /** The currently issued lending of the book, or an empty list if the barcode does not resolve to a book. */
+      @NonNull
+      final public List<Lending> lendings;
+
+      private Resolution(User user, Book book, Idcard idcard, Label label, boolean isbn, boolean ambiguous,
+            List<Lending> lendings) {
+         this.user = user;
+         this.book = book;
+         this.idcard = idcard;
+         this.label = label;
+         this.isbn = isbn;
+         this.ambiguous = ambiguous;
+         this.lendings = lendings;
+      }
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Remembers the rows of one table written since the indexes were updated.
+    * Its monitor is never held while the database is accessed, so the writing thread is never blocked.
+    */
+   private static final class Writes implements WriteHook {
+      private final HashSet<Long> oids = new HashSet<>();
+      private       boolean       all  = true;           // the index has not been built yet
+
+      Writes(String table) {
+         SQLite.addWriteHook(table, this);
+      }
+
+      @Override
+      public synchronized void onWritten(long oid) {
+         if (oid == 0) { all = true; }
+         if (all) { oids.clear(); } else { oids.add(oid); }
+      }
+
+      /**
+       * Returns the row ids of the rows written since the previous call and forgets them.
+       * Returns {@code null} if the index must be rebuilt.
+       */
+      @Nullable
+      synchronized long[] take() {
+         long[] taken = null;
+         if (!all) {
+            taken = new long[oids.size()];
+            int i = 0;
+            for (long oid : oids) { taken[i++] = oid; }
+         }
+         all = false; oids.clear();
+         return taken;
+      }
+   }
+
+   private static final Writes userWrites    = new Writes(User.TAB);
+   private static final Writes bookWrites    = new Writes(Book.TAB);
+   private static final Writes lendingWrites = new Writes(Lending.TAB);
+
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   private static final int MAX_MISSES = 1000;
+
+   private static final LongSparseArray<User>   users        = new LongSparseArray<>();  // users._id -> user w/ idcard
+   private static final SparseLongArray         userByIdcard = new SparseLongArray();    // idcard -> users._id
+
+   private static final LongSparseArray<Book>   books        = new LongSparseArray<>();  // books._id -> book w/ scan id
+   private static final SparseLongArray         bookByLabel  = new SparseLongArray();    // label -> books._id
+   private static final LongSparseArray<long[]> booksByIsbn  = new LongSparseArray<>();  // isbn -> books._id w/o label
+
+   private static final LongSparseArray<Long>   issued       = new LongSparseArray<>();  // lendings._id -> bid
+   private static final LongSparseArray<Long>   issuedByBid  = new LongSparseArray<>();  // bid -> lendings._id
+
+   private static final HashMap<String,Resolution> misses = new HashMap<>();
+
+   private static int missesModCount = -1;
+
+   private BarcodeResolver() { }
+
+   /**
+    * Updates the entries of the rows written since the previous call, or rebuilds an index if necessary.
+    */
+   private static void refresh() {
+      long[] users = userWrites.take(), books = bookWrites.take(), lendings = lendingWrites.take();
+      if (users == null) { loadUsers(); } else { for (long oid : users) { reloadUser(oid); } }
+      if (books == null) { loadBooks(); } else { for (long oid : books) { reloadBook(oid); } }
+      if (lendings == null) { loadLendings(); } else { for (long oid : lendings) { reloadLending(oid); } }
+
+      int missesModCount = SQLite.getModCount(Idcard.TAB) + SQLite.getModCount(Label.TAB);
+      boolean written = users == null || users.length > 0 || books == null || books.length > 0;
+      if (written || missesModCount != BarcodeResolver.missesModCount || misses.size() > MAX_MISSES) {
+         misses.clear();
+         BarcodeResolver.missesModCount = missesModCount;
+      }
+   }
+
+   private static void loadUsers() {
+      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         users.clear(); userByIdcard.clear();
+         for (User user : User.getAll()) { addUser(user); }
+      }
+   }
+
+   private static void reloadUser(long oid) {
+      users.remove(oid);
+      int index = userByIdcard.indexOfValue(oid);
+      if (index >= 0) { userByIdcard.removeAt(index); }
+      User user = User.getByOid(oid);
+      if (user != null) { addUser(user); }
+   }
+
+   private static void addUser(User user) {
+      if (user.hasIdcard()) {
+         users.put(user.getOid(), user);
+         userByIdcard.put(user.getIdcardId(), user.getOid());
+      }
+   }
+
+   private static void loadBooks() {
+      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         books.clear(); bookByLabel.clear(); booksByIsbn.clear();
+         for (Book book : Book.getAll()) { addBook(book); }
+      }
+   }
+
+   private static void reloadBook(long oid) {
+      books.remove(oid);
+      int index = bookByLabel.indexOfValue(oid);
+      if (index >= 0) { bookByLabel.removeAt(index); }
+      for (int i = booksByIsbn.size(); --i >= 0; ) {
+         long[] oids = remove(booksByIsbn.valueAt(i), oid);
+         if (oids.length == 0) { booksByIsbn.removeAt(i); } else { booksByIsbn.setValueAt(i, oids); }
+      }
+      Book book = Book.getByOid(oid);
+      if (book != null) { addBook(book); }
+   }
+
+   private static void addBook(Book book) {
+      if (book.hasLabel()) {
+         books.put(book.getOid(), book);
+         bookByLabel.put(book.getLabelId(), book.getOid());
+      } else if (book.hasISBN()) {
+         books.put(book.getOid(), book);
+         long isbn = book.getISBN().getValue();
+         booksByIsbn.put(isbn, add(booksByIsbn.get(isbn, new long[0]), book.getOid()));
+      }
+   }
+
+   private static void loadLendings() {
+      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         issued.clear(); issuedByBid.clear();
+         for (Lending lending : Lending.getIssued()) { addLending(lending); }
+      }
+   }
+
+   private static void reloadLending(long oid) {
+      Long bid = issued.get(oid);
+      if (bid != null) {
+         issued.remove(oid);
+         issuedByBid.remove(bid);
+      }
+      Lending lending = Lending.getByOid(oid);
+      if (lending != null && !lending.isReturned()) { addLending(lending); }
+   }
+
+   private static void addLending(Lending lending) {
+      long oid = lending.getOid(), bid = lending.getBid();
+      issued.put(oid, bid);
+      issuedByBid.put(bid, oid);
+   }
+
+   @NonNull
+   private static long[] add(@NonNull long[] oids, long oid) {
+      long[] newOids = Arrays.copyOf(oids, oids.length + 1);
+      newOids[oids.length] = oid;
+      return newOids;
+   }
+
+   @NonNull
+   private static long[] remove(@NonNull long[] oids, long oid) {
+      int n = 0;
+      long[] newOids = new long[oids.length];
+      for (long o : oids) { if (o != oid) { newOids[n++] = o; } }
+      return (n == oids.length) ? oids : Arrays.copyOf(newOids, n);
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Resolves the specified barcode. Only the issued lending of a book, if any, is read from the database.
+    * If the barcode is an idcard or a label which is not used,
+    * the database will be queried to determine its state; the result is kept in the negative cache.
+    *
+    * @param barcode
+    *       the scanned barcode.
+    * @return the resolution of the specified barcode.
+    */
+   @NonNull
+   public static Resolution resolve(@NonNull String barcode) {
+      return resolve(barcode, null);
+   }
+
+   /**
+    * Resolves the specified barcode like {@link #resolve(String)} and marks the stages
+    * {@link Stage#PARSE PARSE} and {@link Stage#LOOKUP LOOKUP} of the specified {@code trace}.
+    * The barcode is parsed before the indexes are updated, so updating them is accounted to the lookup.
+    *
+    * @param barcode
+    *       the scanned barcode.
+    * @param trace
+    *       the trace of the scan or {@code null}.
+    * @return the resolution of the specified barcode.
+    */
+   @NonNull
+   public static synchronized Resolution resolve(@NonNull String barcode, @Nullable ScanTrace trace) {
+      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         int number = SerialNumber.parseCode128(barcode);
+         ISBN isbn = (number != 0) ? null : ISBN.parse(barcode);
+         if (trace != null) { trace.mark(Stage.PARSE); }
+         refresh();
+         Resolution resolution = misses.get(barcode);
+         if (resolution == null) {
+            if (number != 0) {
+               User user = getUser(userByIdcard.get(number, 0));
+               Book book = (user != null) ? null : getBook(bookByLabel.get(number, 0));
+               if (user != null) {
+                  resolution = forUser(user);
+               } else if (book != null) {
+                  resolution = forBook(book, false);
+               } else {
+                  resolution = forUnusedSerial(barcode);
+               }
+            } else {
+               long[] oids = (isbn == null) ? null : booksByIsbn.get(isbn.getValue());
+               Book book = (oids == null || oids.length != 1) ? null : getBook(oids[0]);
+               if (book != null) {
+                  resolution = forBook(book, true);
+               } else if (oids != null && oids.length > 1) {
+                  scope.d("ambiguous isbn " + barcode + ", books " + Arrays.toString(oids));
+                  resolution = new Resolution(null, null, null, null, true, true, empty());
+               } else {
+                  resolution = new Resolution(null, null, null, null, isbn != null, false, empty());
+                  misses.put(barcode, resolution);
+               }
+            }
+         } else {
+            scope.d("negative cache hit");
+         }
+         if (trace != null) { trace.mark(Stage.LOOKUP); }
+         return resolution;
+      }
+   }
+
+   @Nullable
+   private static User getUser(long oid) {
+      User user = (oid == 0) ? null : users.get(oid);
+      return (user == null) ? null : user.copy();
+   }
+
+   @Nullable
+   private static Book getBook(long oid) {
+      Book book = (oid == 0) ? null : books.get(oid);
+      return (book == null) ? null : book.copy();
+   }
+
+   @NonNull
+   private static Resolution forUser(@NonNull User user) {
+      return new Resolution(user, null, null, null, false, false, empty());
+   }
+
+   @NonNull
+   private static Resolution forBook(@NonNull Book book, boolean isbn) {
+      boolean issued = issuedByBid.get(book.getBid()) != null;
+      List<Lending> lendings = issued ? Collections.unmodifiableList(Lending.getByBook(book, true)) : empty();
+      return new Resolution(null, book, null, null, isbn, false, lendings);
+   }
+
+   @NonNull
+   private static Resolution forUnusedSerial(String barcode) {
+      Idcard idcard = Idcard.parse(barcode);
+      Label label = (idcard != null) ? null : Label.parse(barcode);
+      Resolution resolution = new Resolution(null, null, idcard, label, false, false, empty());
+      misses.put(barcode, resolution);
+      return resolution;
+   }
+
+   @NonNull
+   private static List<Lending> empty() {
+      return Collections.emptyList();
+   }
+
+}
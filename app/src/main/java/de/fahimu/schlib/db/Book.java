@@ -28,6 +28,7 @@ import de.fahimu.android.db.Values;
 import de.fahimu.android.db.View;
 import de.fahimu.schlib.anw.ISBN;
 import de.fahimu.schlib.anw.SerialNumber;
+import de.fahimu.schlib.app.AdminBooksActivity;
 import de.fahimu.schlib.app.AdminUsersAddStep2;
 import de.fahimu.schlib.app.FirstRun3Activity;
 import de.fahimu.schlib.app.R;
@@ -236,6 +237,28 @@ public final class Book extends Row {
       return book;
    }
 
+   /**
+    * Returns the {@code Book} with the specified row id or {@code null} if there is no such {@code Book}.
+    *
+    * @param oid
+    *       the value of column {@code _id}.
+    * @return the {@code Book} with the specified row id or {@code null}.
+    */
+   @Nullable
+   static Book getByOid(long oid) {
+      return get(OID + "=?", oid);
+   }
+
+   /**
+    * Returns a copy of this {@code Book}, which may be changed without changing this {@code Book}.
+    *
+    * @return a copy of this {@code Book}.
+    */
+   @NonNull
+   Book copy() {
+      return copyTo(new Book());
+   }
+
    @NonNull
    public static Book getByLabel(Label label) {
       return getNonNull(label.getBid());
@@ -361,6 +384,23 @@ public final class Book extends Row {
       return SQLite.get(Book.class, TAB, TAB_COLUMNS, null, SHELF + ", " + NUMBER, null);
    }
 
+   /**
+    * Returns a list of all books, ordered by {@code shelf} and {@code number}.
+    * An additional column {@link Lending#OPEN} is added with the number of open lendings of this book.
+    * <p> This method will be called to populate the list in {@link AdminBooksActivity}. </p>
+    *
+    * @return a list of all books, ordered by {@code shelf} and {@code number}.
+    */
+   @NonNull
+   public static ArrayList<Book> getAllForAdmin() {
+      // SELECT bid, title, ..., vanished, books._id AS _id, IFNULL(open,0) AS open
+      //    FROM books LEFT JOIN open_lendings_bid ON bid=open_lendings_bid._id ORDER BY shelf, number ;
+      String open = App.format("IFNULL(%1$s,0) AS %1$s", Lending.OPEN);
+      Values columns = new Values(COLUMNS, SQLite.alias(TAB, OID), open);
+      String table = App.format("%1$s LEFT JOIN %2$s ON %3$s=%2$s.%4$s", TAB, Lending.TAB_OLB, BID, OID);
+      return SQLite.get(Book.class, table, columns, null, SHELF + ", " + NUMBER, null);
+   }
+
    /**
     * Returns a list of all non-vanished and non-issued books, ordered by {@code shelf} and {@code number}.
     *
@@ -369,11 +409,11 @@ public final class Book extends Row {
    @NonNull
    public static ArrayList<Book> getNonVanishedNonIssued() {
       // SELECT _id, bid, title, shelf, number, vanished FROM books
-      //    WHERE vanished ISNULL AND bid NOT IN (SELECT bid FROM lendings WHERE return ISNULL)
+      //    WHERE vanished ISNULL AND bid NOT IN (SELECT _id FROM open_lendings_bid WHERE open>0)
       //    ORDER BY shelf, number ;
       Values columns = new Values(SQLite.alias(TAB, OID), BID, TITLE, SHELF, NUMBER, VANISHED);
-      String where = App.format("%s ISNULL AND %s NOT IN (SELECT %s FROM %s WHERE %s ISNULL)",
-            VANISHED, BID, BID, Lending.TAB, Lending.RETURN);
+      String where = App.format("%s ISNULL AND %s NOT IN (SELECT %s FROM %s WHERE %s>0)",
+            VANISHED, BID, OID, Lending.TAB_OLB, Lending.OPEN);
       return SQLite.get(Book.class, TAB, columns, null, SHELF + ", " + NUMBER, where);
    }
 
@@ -514,7 +554,7 @@ public final class Book extends Row {
     *
     * @return the {@code Label} number of this {@code Book}.
     */
-   private int getLabelId() {
+   int getLabelId() {
       return values.getInt(LABEL);
    }
 
@@ -561,6 +601,16 @@ public final class Book extends Row {
       return (Book) (vanished == null ? setNull(VANISHED) : setLong(VANISHED, vanished));
    }
 
+   /**
+    * Returns {@code true} if the book is currently issued, otherwise {@code false}.
+    * <p> Precondition: this book was returned by {@link #getAllForAdmin()}. </p>
+    *
+    * @return {@code true} if the book is currently issued.
+    */
+   public boolean isIssued() {
+      return values.getInt(Lending.OPEN) > 0;
+   }
+
    /* ============================================================================================================== */
 
    @NonNull
@@ -593,6 +643,20 @@ public final class Book extends Row {
       return App.getStr(R.string.book_display_vanished, getVanishedMonth());
    }
 
+   /**
+    * Returns the keywords of this book, preceded by a note if the book is currently issued.
+    * <p> Precondition: this book was returned by {@link #getAllForAdmin()}. </p>
+    *
+    * @return the keywords of this book, preceded by a note if the book is currently issued.
+    */
+   @NonNull
+   public String getDisplayKeywords() {
+      String keywords = getKeywords();
+      if (!isIssued()) { return keywords; }
+      return keywords.isEmpty() ? App.getStr(R.string.book_display_issued) :
+             App.getStr(R.string.book_display_issued_keywords, keywords);
+   }
+
    @NonNull
    public String getDisplay() {
       return App.format("\"%s\" (%s %03d)", getTitle(), getShelf(), getNumber());
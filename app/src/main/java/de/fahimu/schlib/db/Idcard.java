@@ -29,7 +29,7 @@ import de.fahimu.schlib.app.R;
  */
 public final class Idcard extends Serial {
 
-   static final private String TAB      = "idcards";
+   static final         String TAB      = "idcards";
    static final public  int    MIN      = 1000;
    static final private int    MAX      = 9999;
    static final private int    PER_PAGE = 10;
@@ -70,7 +70,7 @@ public final class Idcard extends Serial {
     */
    public static int createOnePage() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-         createOnePage(Idcard.class, TAB, PER_PAGE); return PER_PAGE;
+         createOnePage(TAB, PER_PAGE); return PER_PAGE;
       }
    }
 
@@ -178,7 +178,7 @@ public final class Idcard extends Serial {
    @NonNull
    public static List<Integer> getPageNumbers() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-         return getPageNumbers(Idcard.class, TAB);
+         return getPageNumbers(TAB);
       }
    }
 
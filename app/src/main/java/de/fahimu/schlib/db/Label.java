@@ -29,7 +29,7 @@ import de.fahimu.schlib.app.R;
  */
 public final class Label extends Serial {
 
-   static final private String TAB      = "labels";
+   static final         String TAB      = "labels";
    static final private int    MIN      = 100000;
    static final private int    MAX      = 999999;
    static final private int    PER_PAGE = 21;
@@ -70,7 +70,21 @@ public final class Label extends Serial {
     */
    public static int createOnePage() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-         createOnePage(Label.class, TAB, PER_PAGE); return PER_PAGE;
+         createOnePage(TAB, PER_PAGE); return PER_PAGE;
+      }
+   }
+
+   /**
+    * Sets the state of {@code pages * }{@link #PER_PAGE} rows in table {@code labels} to 'Printed'.
+    * <p> Called to create the labels of several pages at once. </p>
+    *
+    * @param pages
+    *       the number of pages to create.
+    * @return the number of created labels.
+    */
+   public static int createPages(int pages) {
+      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
+         createPages(TAB, PER_PAGE, pages); return pages * PER_PAGE;
       }
    }
 
@@ -178,7 +192,7 @@ public final class Label extends Serial {
    @NonNull
    public static List<Integer> getPageNumbers() {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-         return getPageNumbers(Label.class, TAB);
+         return getPageNumbers(TAB);
       }
    }
 
@@ -9,10 +9,12 @@ package de.fahimu.schlib.db;
 import android.database.sqlite.SQLiteDatabase;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TimeZone;
 
 import de.fahimu.android.app.App;
 import de.fahimu.android.db.Row;
@@ -26,6 +28,7 @@ import de.fahimu.android.db.View;
 import de.fahimu.schlib.app.R;
 
 import static de.fahimu.android.db.SQLite.MIN_TSTAMP;
+import static de.fahimu.android.db.Trigger.Type.AFTER_DELETE;
 import static de.fahimu.android.db.Trigger.Type.AFTER_INSERT;
 import static de.fahimu.android.db.Trigger.Type.AFTER_UPDATE;
 
@@ -43,6 +46,8 @@ public final class Lending extends Row {
    static final private String TAB_DUN  = "dunning_letters";
    static final private String VIEW_LOC = "lendings_loc";
    static final private String VIEW_DEL = "lendings_loc_delay";
+   static final         String TAB_OLU  = "open_lendings_uid";
+   static final         String TAB_OLB  = "open_lendings_bid";
 
    static final private String OID    = BaseColumns._ID;
    static final private String BID    = "bid";
@@ -56,6 +61,7 @@ public final class Lending extends Row {
    static final private String COUNT = "count";
    static final private String TERM  = "term";
    static final private String DELAY = "delay";
+   static final         String OPEN  = "open";
 
    static final private int MIN_LENDING_TIME = 60;
 
@@ -65,17 +71,25 @@ public final class Lending extends Row {
       createTableLendings(db);
       createTableOpeningDates(db);
       createTableDunningLetters(db);
+      createTableOpenLendings(db, TAB_OLU);
+      createTableOpenLendings(db, TAB_OLB);
 
       createViewLendingsLoc(db);
       createViewLendingsLocDelay(db);
       createTrigger(db, AFTER_INSERT, ISSUE);
       createTrigger(db, AFTER_UPDATE, RETURN);
+      createTrigger(db, AFTER_DELETE);
    }
 
    static void upgrade(SQLiteDatabase db, int oldVersion) {
-      Trigger.drop(db, TAB, AFTER_INSERT, AFTER_UPDATE);
+      Trigger.drop(db, TAB, AFTER_INSERT, AFTER_UPDATE, AFTER_DELETE);
       View.drop(db, VIEW_LOC, VIEW_DEL);
 
+      if (oldVersion < 6) {
+         createTableOpenLendings(db, TAB_OLU);   // new introduced with V6
+         createTableOpenLendings(db, TAB_OLB);   // new introduced with V6
+      }
+
       if (oldVersion < 2) {
          createTableOpeningDates(db);     // new introduced with V2
          deleteShortTimeLendings(db);     // rows forbidden since V2 where return - issue < MIN_LENDING_TIME
@@ -89,6 +103,9 @@ public final class Lending extends Row {
       createViewLendingsLocDelay(db);
       createTrigger(db, AFTER_INSERT, ISSUE);
       createTrigger(db, AFTER_UPDATE, RETURN);
+      createTrigger(db, AFTER_DELETE);
+      countOpenLendings(db, TAB_OLU, UID);
+      countOpenLendings(db, TAB_OLB, BID);
    }
 
    private static void createTableLendings(SQLiteDatabase db) {
@@ -115,6 +132,31 @@ public final class Lending extends Row {
       tab.create(db);
    }
 
+   /**
+    * Table with the number of currently issued books per user or per book, where {@code _id} is the
+    * {@code uid} or {@code bid}. The rows are maintained by the triggers of table {@code lendings}.
+    */
+   private static void createTableOpenLendings(SQLiteDatabase db, String table) {
+      Table tab = new Table(table, 4, false);
+      tab.addLongColumn(OPEN, true);
+      tab.create(db);
+   }
+
+   /**
+    * Recomputes the specified counter table from table {@code lendings}.
+    * <p>
+    * <pre> {@code
+    * DELETE FROM table ;
+    * INSERT INTO table (_id, open) SELECT column, COUNT(*) FROM lendings WHERE return ISNULL GROUP BY column ;
+    * }
+    * </pre>
+    */
+   private static void countOpenLendings(SQLiteDatabase db, String table, String column) {
+      SQLite.execSQL(db, App.format("DELETE FROM %s;", table));
+      SQLite.execSQL(db, App.format("INSERT INTO %1$s (%2$s, %3$s) SELECT %4$s, COUNT(*) FROM %5$s " +
+            "WHERE %6$s ISNULL GROUP BY %4$s;", table, OID, OPEN, column, TAB, RETURN));
+   }
+
    /**
     * Select from {@code lendings} and {@code dunning_letters} with values of
     * {@code issue}, {@code return} and {@code dun} converted to localtime.
@@ -142,7 +184,8 @@ public final class Lending extends Row {
    }
 
    /**
-    * Creates a trigger of the specified type that inserts into table opening_dates after lendings changed.
+    * Creates a trigger of the specified type that inserts into table opening_dates after lendings changed
+    * and that updates the counters of open lendings per user and per book.
     * <p>
     * <pre> {@code
     * INSERT OR IGNORE INTO opening_dates
@@ -150,6 +193,9 @@ public final class Lending extends Row {
     *                     JOIN users USING (uid)
     *                     JOIN opened ON ((column/86400+4)%7=dw AND column%86400 BETWEEN s1 AND s2)
     * WHERE role='pupil' AND lendings_loc._id=NEW._id AND OLD.column ISNULL;
+    * UPDATE open_lendings_uid SET open=open-(OLD.return ISNULL) WHERE _id=OLD.uid;
+    * INSERT OR IGNORE INTO open_lendings_uid (_id, open) VALUES (NEW.uid, 0);
+    * UPDATE open_lendings_uid SET open=open+(NEW.return ISNULL) WHERE _id=NEW.uid;
     * }
     * </pre>
     */
@@ -163,9 +209,23 @@ public final class Lending extends Row {
          }
          trigger.addInsertOrIgnoreSelected(TAB_OPD, column + "/86400", table, where);
       }
+      addCounterStatements(trigger, type, TAB_OLU, UID);
+      addCounterStatements(trigger, type, TAB_OLB, BID);
       trigger.create(db);
    }
 
+   private static void addCounterStatements(Trigger trigger, Type type, String table, String column) {
+      String update = "UPDATE %1$s SET %2$s=%2$s%3$s(%4$s.%5$s ISNULL) WHERE %6$s=%4$s.%7$s";
+      if (type != AFTER_INSERT) {
+         trigger.addStatement(App.format(update, table, OPEN, '-', "OLD", RETURN, OID, column));
+      }
+      if (type != AFTER_DELETE) {
+         trigger.addStatement(App.format("INSERT OR IGNORE INTO %s (%s, %s) VALUES (NEW.%s, 0)",
+               table, OID, OPEN, column));
+         trigger.addStatement(App.format(update, table, OPEN, '+', "NEW", RETURN, OID, column));
+      }
+   }
+
    /**
     * Select from {@code lendings_loc} and with extra columns {@code term} and {@code delay}.
     * <p>
@@ -256,6 +316,19 @@ public final class Lending extends Row {
       return SQLite.get(Lending.class, TAB, columns, null, OID, where, args);
    }
 
+   /**
+    * Returns the {@code Lending} with the specified row id or {@code null} if there is no such {@code Lending}.
+    *
+    * @param oid
+    *       the value of column {@code _id}.
+    * @return the {@code Lending} with the specified row id or {@code null}.
+    */
+   @Nullable
+   static Lending getByOid(long oid) {
+      ArrayList<Lending> list = get(OID + "=?", oid);
+      return list.isEmpty() ? null : list.get(0);
+   }
+
    /**
     * Returns the {@link Lending}s of the specified book.
     *
@@ -283,6 +356,28 @@ public final class Lending extends Row {
       return get(whereClause(UID, issuedOnly), user.getUid());
    }
 
+   /**
+    * Returns the number of books currently issued to the user with the specified {@code uid}.
+    * The counter is maintained by the triggers of table {@code lendings}, so only a single row is read.
+    *
+    * @param uid
+    *       the uid of the user.
+    * @return the number of books currently issued to the user.
+    */
+   static int countIssuedByUser(long uid) {
+      return SQLite.getIntFromQuery(TAB_OLU, OPEN, OID + "=?", uid);
+   }
+
+   /**
+    * Returns the {@link Lending}s where the books are currently issued, ordered by {@code _id}.
+    *
+    * @return the {@link Lending}s where the books are currently issued.
+    */
+   @NonNull
+   static ArrayList<Lending> getIssued() {
+      return get(RETURN + " ISNULL");
+   }
+
    /**
     * Returns the {@link Lending}s from {@code lendings_loc_delay} as specified by {@code where} and {@code args}.
     * <p>
@@ -396,6 +491,14 @@ public final class Lending extends Row {
 
    private User user;
 
+   long getBid() {
+      return values.getLong(BID);
+   }
+
+   long getUid() {
+      return values.getLong(UID);
+   }
+
    private long getIssue() {
       return values.getLong(ISSUE);
    }
@@ -442,7 +545,7 @@ public final class Lending extends Row {
       return values.getInt(COUNT);
    }
 
-   private boolean isReturned() {
+   boolean isReturned() {
       return values.notNull(RETURN);
    }
 
@@ -512,29 +615,95 @@ public final class Lending extends Row {
       return hasTerm() && getDelay() >= minDelay;
    }
 
+   /**
+    * The result of returning a book.
+    */
+   public static final class Returned {
+      /** The returned book. */
+      @NonNull
+      final public Book book;
+
+      /** The user who returned the book. */
+      @NonNull
+      final public User user;
+
+      /** The number of days the book was returned delayed, see {@link #getDelay()}. */
+      final public int delay;
+
+      private Returned(@NonNull Book book, @NonNull User user, int delay) {
+         this.book = book;
+         this.user = user;
+         this.delay = delay;
+      }
+   }
+
+   /**
+    * Returns the specified {@code book} if it is currently issued.
+    * The issued lending is queried and {@link #returnBook() returned} in one transaction.
+    *
+    * @param book
+    *       the book.
+    * @return the returned book, the user and the delay or {@code null} if the book is not issued.
+    */
+   @Nullable
+   public static Returned returnBook(@NonNull Book book) {
+      try (Transaction transaction = new Transaction()) {
+         ArrayList<Lending> lendings = getByBook(book, true);
+         Returned returned = null;
+         if (!lendings.isEmpty()) {
+            Lending lending = lendings.get(0);
+            lending.book = book;
+            returned = lending.returnBook();
+         }
+         transaction.setSuccessful();
+         return returned;
+      }
+   }
+
    /**
     * Updates the value of column {@code return} to the current posix time and
-    * returns the number of days the book was returned delayed as an {@code int}.
+    * computes the number of days the book was returned delayed.
     * <p>
     * If the lending time is less than MIN_LENDING_TIME seconds,
-    * we assume this lending to be erroneous and we'll delete this row and return 0.
+    * we assume this lending to be erroneous and we'll delete this row and the delay is 0.
+    * </p><p>
+    * The delay is computed like column {@code delay} of view {@code lendings_loc_delay},
+    * but only the first row of table {@code opening_dates} not before the end of the book's period is queried.
+    * Both statements are executed in one transaction, so the row inserted by the trigger
+    * if the library is opened right now is seen by the query.
     * </p>
     *
-    * @return the number of days the book was returned delayed as an {@code int}.
+    * @return the returned book, the user and the delay.
     *
     * @see <a href="https://en.wikipedia.org/wiki/Unix_time">POSIX time</a>
     */
-   public int returnBook() {
+   @NonNull
+   public Returned returnBook() {
       long now = App.posixTime();
-      if (now - getIssue() < MIN_LENDING_TIME) {
-         delete();
-         return 0;
-      } else {
-         setLong(RETURN, now).update();
-         return getLocalizedLendingsWithDelay(null, OID + "=?", getOid()).get(0).getDelay();
+      try (Transaction transaction = new Transaction()) {
+         int delay = 0;
+         if (now - getIssue() < MIN_LENDING_TIME) {
+            delete();
+         } else {
+            setLong(RETURN, now).update();
+            // SELECT MIN(_id) FROM opening_dates WHERE _id>=$issueDay+$period ;
+            int day = localDay(getIssue()) + getBook().getPeriod();
+            int term = SQLite.getIntFromQuery(TAB_OPD, "MIN(" + OID + ")", OID + ">=?", day);
+            delay = localDay(now) - (term == 0 ? day : term);
+         }
+         transaction.setSuccessful();
+         return new Returned(getBook(), getUser(), delay);
       }
    }
 
+   /**
+    * Returns the day number of the specified posix time in the default timezone,
+    * like {@code CAST(STRFTIME('%s',$posixTime,'unixepoch','localtime') AS INTEGER)/86400}.
+    */
+   private static int localDay(long posixTime) {
+      return (int) ((posixTime + TimeZone.getDefault().getOffset(posixTime * 1000) / 1000) / 86400);
+   }
+
    /* ============================================================================================================== */
 
    @NonNull
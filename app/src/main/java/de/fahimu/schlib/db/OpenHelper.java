@@ -34,7 +34,7 @@ import de.fahimu.schlib.share.FileType;
 public final class OpenHelper extends SQLiteOpenHelper {
 
    public OpenHelper() {
-      super(App.getInstance(), "database", null, 4);
+      super(App.getInstance(), "database", null, 6);
       restoreDatabaseFile();
    }
 
@@ -93,6 +93,7 @@ public final class OpenHelper extends SQLiteOpenHelper {
          Book.create(db);
          Use.create(db);
          Lending.create(db);
+         Stocktaking.create(db);
       }
    }
 
@@ -108,6 +109,7 @@ public final class OpenHelper extends SQLiteOpenHelper {
          Book.upgrade(db, oldVersion);
          Use.upgrade(db, oldVersion);
          Lending.upgrade(db, oldVersion);
+         Stocktaking.upgrade(db, oldVersion);
 
          if (db.isDatabaseIntegrityOk()) {
             scope.d("PRAGMA integrity_check SUCCEEDED");
@@ -15,7 +15,6 @@ import android.support.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.Iterator;
 import java.util.List;
 
 import de.fahimu.android.app.App;
@@ -56,13 +55,16 @@ public abstract class Serial extends Row {
    static void upgrade(SQLiteDatabase db, @NonNull String table, int min, int max, int oldVersion) {
       if (oldVersion < 2) {
          upgradeTableV2(db, table, min, max);
+      } else if (oldVersion < 6) {
+         Table.createIndex(db, table, PAGE);     // page index introduced with V6
+         Table.createIndex(db, table, LOST);     // free-list index introduced with V6
       }
    }
 
    private static void createTable(SQLiteDatabase db, @NonNull String table, int min, int max) {
       Table tab = new Table(table, 4, false).addCheckBetween(min, max);
-      tab.addLongColumn(PAGE, false).addCheckBetween(1, 999);
-      tab.addTimeColumn(LOST, false).addCheckPosixTime(MIN_TSTAMP);
+      tab.addLongColumn(PAGE, false).addCheckBetween(1, 999).addIndex();     // essential to find printed pages
+      tab.addTimeColumn(LOST, false).addCheckPosixTime(MIN_TSTAMP).addIndex();   // essential to find lost serials
       tab.addConstraint().addCheck(PAGE + " ISNULL OR " + LOST + " ISNULL");
       tab.create(db);
    }
@@ -94,7 +96,7 @@ public abstract class Serial extends Row {
    }
 
    /**
-    * Returns how often {@link #createOnePage(Class, String, int)} can be called without an exception thrown.
+    * Returns how often {@link #createOnePage(String, int)} can be called without an exception thrown.
     * <p> Called before creating new labels or idcards. </p>
     *
     * @param table
@@ -117,35 +119,89 @@ public abstract class Serial extends Row {
 
    /**
     * Sets the state of {@code serialsPerPage} rows in {@code table} to 'Printed'.
+    * <p> Called to create new labels or idcards. </p>
+    *
+    * @param table
+    *       the table with the serials to create.
+    * @param serialsPerPage
+    *       the number of labels that can be placed on a single page.
+    * @see #createPages(String, int, int)
+    */
+   static void createOnePage(String table, int serialsPerPage) {
+      createPages(table, serialsPerPage, 1);
+   }
+
+   /**
+    * Sets the state of {@code pages * serialsPerPage} rows in {@code table} to 'Printed'.
     * First get the maximum page number currently assigned to a serial in the specified {@code table}.
-    * Next update rows where the value of {@code lost} is less than the current date minus five years, meaning that
-    * this serial is lost for more than five years. If more serials are needed, new rows will then be inserted.
+    * Next, for every page, update rows where the value of {@code lost} is less than the current date minus
+    * five years, meaning that this serial is lost for more than five years. If more serials are needed,
+    * new rows will then be inserted. Each page is claimed with at most two statements, independent of
+    * {@code serialsPerPage}.
     * <p> Called to create new labels or idcards. </p>
     *
-    * @param cls
-    *       either {@link Idcard} or {@link Label}.
     * @param table
     *       the table with the serials to create.
     * @param serialsPerPage
     *       the number of labels that can be placed on a single page.
+    * @param pages
+    *       the number of pages to create.
     */
-   static void createOnePage(Class<? extends Serial> cls, String table, int serialsPerPage) {
+   static void createPages(String table, int serialsPerPage, int pages) {
       try (SQLite.Transaction transaction = new SQLite.Transaction()) {
-         int nextPage = 1 + SQLite.getIntFromQuery(table, "MAX(" + PAGE + ")", null);
-         // SELECT _id FROM $table WHERE lost<nowMinusYears(5) ORDER BY _id ;
-         String where = LOST + "<" + nowMinusYears(5);
-         Iterator<? extends Serial> lost = SQLite.get(cls, table, new Values(OID), null, OID, where).iterator();
-         for (int i = 0; i < serialsPerPage; i++) {
-            if (lost.hasNext()) {
-               lost.next().setLost(false).setLong(PAGE, nextPage).update();
-            } else {
-               SQLite.insert(null, table, new Values().addLong(PAGE, nextPage));
+         int lastPage = SQLite.getIntFromQuery(table, "MAX(" + PAGE + ")", null);
+         int lastOid = SQLite.getIntFromQuery(table, "MAX(" + OID + ")", null);
+         long lostBefore = nowMinusYears(5);
+         int writes = 0;
+         for (int page = lastPage + 1; page <= lastPage + pages; page++) {
+            int recycled = recycleLost(table, serialsPerPage, page, lostBefore);
+            writes++;
+            if (recycled < serialsPerPage) {
+               int count = serialsPerPage - recycled;
+               insertRange(table, lastOid + 1, count, page);
+               writes++;
+               lastOid += count;
             }
          }
          transaction.setSuccessful();
+         SerialStates.of(table).onPagesCreated(lastPage + 1, writes);
       }
    }
 
+   /**
+    * Moves up to {@code count} serials from the free-list to the specified {@code page}.
+    * The free-list consists of the serials lost before {@code lostBefore}, found by the index on {@code lost}.
+    * <p>
+    * <pre> {@code
+    * UPDATE $table SET page=$page, lost=NULL
+    *    WHERE _id IN (SELECT _id FROM $table WHERE lost<$lostBefore ORDER BY _id LIMIT $count) ;
+    * }
+    * </pre>
+    *
+    * @return the number of recycled serials.
+    */
+   private static int recycleLost(String table, int count, int page, long lostBefore) {
+      String where = App.format("%1$s IN (SELECT %1$s FROM %2$s WHERE %3$s<%4$d ORDER BY %1$s LIMIT %5$d)",
+            OID, table, LOST, lostBefore, count);
+      return SQLite.update(table, new Values(LOST).addLong(PAGE, page), where);
+   }
+
+   /**
+    * Inserts {@code count} new serials, starting with {@code first}, on the specified {@code page}.
+    * <p>
+    * <pre> {@code
+    * WITH RECURSIVE numbers(n) AS (SELECT $first UNION ALL SELECT n+1 FROM numbers WHERE n<$last)
+    * INSERT INTO $table (_id, page) SELECT n, $page FROM numbers ;
+    * }
+    * </pre>
+    */
+   private static void insertRange(String table, int first, int count, int page) {
+      String numbers = App.format("WITH RECURSIVE numbers(n) AS (SELECT %d UNION ALL SELECT n+1 FROM numbers " +
+            "WHERE n<%d)", first, first + count - 1);
+      SQLite.modify(table, App.format("%s\nINSERT INTO %s (%s, %s) SELECT n, %d FROM numbers;",
+            numbers, table, OID, PAGE, page));
+   }
+
    /**
     * Sets the state of the serials on the most recently printed page to 'Lost'.
     * <p> Called to delete labels or idcards. </p>
@@ -157,19 +213,21 @@ public abstract class Serial extends Row {
    static int deleteOnePage(String table) {
       // UPDATE $table SET page=NULL, lost=1000000000 WHERE page=(SELECT MAX(page) FROM $table) ;
       String where = App.format("%1$s=(SELECT MAX(%1$s) FROM %2$s)", PAGE, table);
-      return SQLite.update(table, new Values(PAGE).addLong(LOST, MIN_TSTAMP), where);
+      int rows = SQLite.update(table, new Values(PAGE).addLong(LOST, MIN_TSTAMP), where);
+      SerialStates.of(table).onLastPageDeleted();
+      return rows;
    }
 
    /**
     * Returns the count of all 'Printed' serials in the specified {@code table}.
+    * The count is answered by the in-memory {@link SerialStates} of the table.
     *
     * @param table
     *       the table to query.
     * @return the count of all 'Printed' serials in the specified {@code table}.
     */
    static int countPrinted(String table) {
-      // SELECT COUNT(*) FROM $table WHERE page NOTNULL ;
-      return SQLite.getIntFromQuery(table, "COUNT(*)", PAGE + " NOTNULL");
+      return SerialStates.of(table).countPrinted();
    }
 
    /**
@@ -286,23 +344,16 @@ public abstract class Serial extends Row {
 
    /**
     * Returns a ascending ordered list of all page numbers in the specified {@code table}.
+    * The list is answered by the in-memory {@link SerialStates} of the table.
     * <p> Called before registering 'Printed' PDF documents ({@link de.fahimu.schlib.app.RegisterPrintsActivity}). </p>
     *
-    * @param cls
-    *       either {@link Idcard} or {@link Label}.
     * @param table
     *       the table to query.
     * @return a ascending ordered list of all page numbers in the specified {@code table}.
     */
    @NonNull
-   static List<Integer> getPageNumbers(Class<? extends Serial> cls, String table) {
-      // SELECT page FROM $table WHERE page NOTNULL GROUP BY page ORDER BY page ;
-      List<? extends Serial> serials = SQLite.get(cls, table, new Values(PAGE), PAGE, PAGE, PAGE + " NOTNULL");
-
-      List<Integer> numbers = new ArrayList<>(serials.size());
-      for (Serial serial : serials) {
-         numbers.add(serial.getPage());
-      }
+   static List<Integer> getPageNumbers(String table) {
+      List<Integer> numbers = SerialStates.of(table).getPageNumbers();
       Log.d("numbers=" + numbers);
       return numbers;
    }
@@ -318,7 +369,9 @@ public abstract class Serial extends Row {
     */
    public static int setStocked(Serial serial) {
       // UPDATE $serial.getTable() SET page=NULL WHERE page=$serial.getPage() ;
-      return SQLite.update(serial.getTable(), new Values(PAGE), PAGE + "=" + serial.getPage());
+      int rows = SQLite.update(serial.getTable(), new Values(PAGE), PAGE + "=" + serial.getPage());
+      SerialStates.of(serial.getTable()).onPageStocked(serial.getPage());
+      return rows;
    }
 
    /* ============================================================================================================== */
@@ -0,0 +1,197 @@
+/*
+ * SerialStates.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.schlib.db;
+
+import android.support.annotation.NonNull;
+import android.util.SparseArray;
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import de.fahimu.android.app.Log;
+import de.fahimu.android.db.SQLite;
+import de.fahimu.android.db.Values;
+
+/**
+ * An in-memory model of the 'Printed' serials in one table, kept as one bitmap with all 'Printed' serials indexed
+ * by the serial number, and one bitmap per page with the 'Printed' serials of that page.
+ * The model is loaded when it is queried for the first time and reloaded whenever the
+ * {@link SQLite#getModCount(String) modification counter} of the table changed unexpectedly.
+ * Writes done by {@link Serial} are applied in place. If the transaction containing these writes is rolled back,
+ * the modification counter is advanced by {@link SQLite.Transaction}, so the model is reloaded by the next query.
+ * <p> All methods are synchronized, so the model may be used by the main thread and a worker thread. </p>
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+final class SerialStates {
+
+   private static SerialStates idcards, labels;
+
+   /**
+    * Returns the model of the specified {@code table}, which is created when it is requested for the first time.
+    *
+    * @param table
+    *       either {@link Idcard#TAB} or {@link Label#TAB}.
+    * @return the model of the specified {@code table}.
+    */
+   @NonNull
+   static synchronized SerialStates of(String table) {
+      switch (table) {
+      case Idcard.TAB:
+         if (idcards == null) {
+            idcards = new SerialStates(Idcard.class, table);
+         }
+         return idcards;
+      case Label.TAB:
+         if (labels == null) {
+            labels = new SerialStates(Label.class, table);
+         }
+         return labels;
+      default:
+         throw new IllegalArgumentException("no serial states for table " + table);
+      }
+   }
+
+   /* ============================================================================================================== */
+
+   private final Class<? extends Serial> cls;
+   private final String                  table;
+
+   private final BitSet printed = new BitSet();
+
+   private final SparseArray<BitSet> pages = new SparseArray<>();      // page -> 'Printed' serials, ordered by page
+
+   private int modCount = -1;
+
+   /**
+    * Creates the model of the specified {@code table}, which is not loaded until it is queried.
+    *
+    * @param cls
+    *       either {@link Idcard} or {@link Label}.
+    * @param table
+    *       the table with the serials.
+    */
+   private SerialStates(Class<? extends Serial> cls, String table) {
+      this.cls = cls;
+      this.table = table;
+   }
+
+   /**
+    * Reloads the model if the table has been modified since it was loaded.
+    * The modification counter is read before loading, so a concurrent write causes another reload.
+    */
+   private void refresh() {
+      int modCount = SQLite.getModCount(table);
+      if (modCount != this.modCount) {
+         load();
+         this.modCount = modCount;
+      }
+   }
+
+   /**
+    * Loads the 'Printed' serials with the index on column {@code page}.
+    */
+   private void load() {
+      printed.clear();
+      pages.clear();
+      // SELECT _id, page FROM $table WHERE page NOTNULL ;
+      Values columns = new Values(Serial.OID, Serial.PAGE);
+      for (Serial serial : SQLite.get(cls, table, columns, null, null, Serial.PAGE + " NOTNULL")) {
+         setPrinted(serial.getId(), serial.getPage());
+      }
+      Log.d(table + ": printed=" + printed.cardinality() + ", pages=" + pages.size());
+   }
+
+   private void setPrinted(int id, int page) {
+      BitSet serials = pages.get(page);
+      if (serials == null) { pages.put(page, serials = new BitSet()); }
+      serials.set(id);
+      printed.set(id);
+   }
+
+   /**
+    * Returns {@code true} if exactly {@code writes} modifications have been done since the model was loaded or
+    * updated in place, so the caller may apply its own modifications in place. Otherwise the model is left
+    * outdated and will be reloaded by the next query.
+    */
+   private boolean expect(int writes) {
+      int modCount = SQLite.getModCount(table);
+      if (this.modCount == -1 || modCount != this.modCount + writes) { return false; }
+      this.modCount = modCount;
+      return true;
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Returns the number of 'Printed' serials.
+    *
+    * @return the number of 'Printed' serials.
+    */
+   synchronized int countPrinted() {
+      refresh();
+      return printed.cardinality();
+   }
+
+   /**
+    * Returns a ascending ordered list of all page numbers.
+    *
+    * @return a ascending ordered list of all page numbers.
+    */
+   @NonNull
+   synchronized List<Integer> getPageNumbers() {
+      refresh();
+      List<Integer> numbers = new ArrayList<>(pages.size());
+      for (int i = 0; i < pages.size(); i++) {
+         numbers.add(pages.keyAt(i));
+      }
+      return numbers;
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Called after the pages beginning with {@code firstPage} have been created by {@code writes} statements.
+    * The serials of these pages are read with the index on column {@code page}.
+    */
+   synchronized void onPagesCreated(int firstPage, int writes) {
+      if (expect(writes)) {
+         // SELECT _id, page FROM $table WHERE page>=$firstPage ;
+         Values columns = new Values(Serial.OID, Serial.PAGE);
+         for (Serial serial : SQLite.get(cls, table, columns, null, null, Serial.PAGE + ">=?", firstPage)) {
+            setPrinted(serial.getId(), serial.getPage());
+         }
+      }
+   }
+
+   /**
+    * Called after the serials on the most recently printed page have been set to 'Lost' by a single statement.
+    */
+   synchronized void onLastPageDeleted() {
+      if (expect(1) && pages.size() > 0) {
+         BitSet serials = pages.valueAt(pages.size() - 1);
+         pages.removeAt(pages.size() - 1);
+         printed.andNot(serials);
+      }
+   }
+
+   /**
+    * Called after the serials on the specified {@code page} have been promoted to 'Stocked' by a single statement.
+    */
+   synchronized void onPageStocked(int page) {
+      BitSet serials = pages.get(page);
+      if (expect(1) && serials != null) {
+         pages.remove(page);
+         printed.andNot(serials);
+      }
+   }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Stocktaking.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.schlib.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.support.annotation.NonNull;
+import android.util.Base64;
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import de.fahimu.android.app.App;
+import de.fahimu.android.db.Row;
+import de.fahimu.android.db.SQLite;
+import de.fahimu.android.db.Table;
+import de.fahimu.android.db.Values;
+
+import static de.fahimu.android.db.SQLite.MIN_TSTAMP;
+
+/**
+ * A in-memory representation of one row of table {@code stocktakings}.
+ * A row stores the books seen while stocktaking one shelf as a bitmap indexed by {@code bid},
+ * so stocktaking can be continued after the app was restarted.
+ * <p> The bitmap is written to the database by {@link #checkpoint()} after every
+ * {@link #CHECKPOINT_SCANS} new books and whenever the stocktaking is interrupted. </p>
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+public final class Stocktaking extends Row {
+
+   static final private String TAB    = "stocktakings";
+   static final private String OID    = BaseColumns._ID;
+   static final private String SHELF  = "shelf";
+   static final private String SEEN   = "seen";
+   static final private String TSTAMP = "tstamp";
+
+   /** The number of new books after which the bitmap is written to the database. */
+   static final private int CHECKPOINT_SCANS = 25;
+
+   /** Sessions not continued for this number of seconds belong to a previous stocktaking. */
+   static final private long MAX_AGE = 60 * 86400;
+
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   static void create(SQLiteDatabase db) {
+      createTableStocktakings(db);
+   }
+
+   static void upgrade(SQLiteDatabase db, int oldVersion) {
+      if (oldVersion < 5) {
+         createTableStocktakings(db);      // new introduced with V5
+      }
+   }
+
+   private static void createTableStocktakings(SQLiteDatabase db) {
+      Table tab = new Table(TAB, 6, true);
+      tab.addTextColumn(SHELF, true).addUnique();
+      tab.addTextColumn(SEEN, true);
+      tab.addTimeColumn(TSTAMP, true).addCheckPosixTime(MIN_TSTAMP).addDefaultPosixTime();
+      tab.create(db);
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Returns the stocktaking of the specified {@code shelf}. If there is no such row in the table or if it
+    * has not been continued for a long time, a new stocktaking is returned, which is inserted at the first
+    * {@link #checkpoint()}.
+    *
+    * @param shelf
+    *       the shelf.
+    * @return the stocktaking of the specified {@code shelf}.
+    */
+   @NonNull
+   public static Stocktaking open(@NonNull String shelf) {
+      Values columns = new Values(OID, SHELF, SEEN, TSTAMP);
+      ArrayList<Stocktaking> list = SQLite.get(Stocktaking.class, TAB, columns, null, null, SHELF + "=?", shelf);
+      if (!list.isEmpty()) {
+         Stocktaking stocktaking = list.get(0);
+         if (App.posixTime() - stocktaking.values.getLong(TSTAMP) < MAX_AGE) {
+            byte[] bytes = Base64.decode(stocktaking.values.getText(SEEN), Base64.NO_WRAP);
+            stocktaking.seen = BitSet.valueOf(bytes);
+            stocktaking.stored = true;
+            return stocktaking;
+         }
+         stocktaking.delete();
+      }
+      Stocktaking stocktaking = new Stocktaking();
+      stocktaking.setText(SHELF, shelf);
+      stocktaking.seen = new BitSet();
+      return stocktaking;
+   }
+
+   /* ============================================================================================================== */
+
+   @NonNull
+   @Override
+   protected String getTable() { return TAB; }
+
+   private BitSet seen;
+
+   private int unsaved = 0;
+
+   private boolean stored = false;      // true if this stocktaking is a row of the table
+
+   @NonNull
+   public String getShelf() {
+      return values.getText(SHELF);
+   }
+
+   /**
+    * Marks the specified book as seen and returns {@code true} if it has not been seen before.
+    *
+    * @param book
+    *       the book.
+    * @return {@code true} if the specified book has not been seen before.
+    */
+   public boolean add(@NonNull Book book) {
+      int bid = (int) book.getBid();
+      if (seen.get(bid)) { return false; }
+      seen.set(bid);
+      if (++unsaved >= CHECKPOINT_SCANS) { checkpoint(); }
+      return true;
+   }
+
+   /**
+    * Returns a copy of the bitmap of seen books, which may be used by other threads.
+    *
+    * @return a copy of the bitmap of seen books.
+    */
+   @NonNull
+   public BitSet getSeen() {
+      return (BitSet) seen.clone();
+   }
+
+   /**
+    * Writes the bitmap to the database if books have been seen since the last checkpoint.
+    */
+   public void checkpoint() {
+      if (unsaved > 0) {
+         setText(SEEN, Base64.encodeToString(seen.toByteArray(), Base64.NO_WRAP));
+         setLong(TSTAMP, App.posixTime());
+         if (stored) {
+            update();
+         } else {
+            insert();
+            stored = true;
+         }
+         unsaved = 0;
+      }
+   }
+
+   /**
+    * Deletes this stocktaking from the database if all books of the shelf have been seen,
+    * so the next stocktaking of the shelf starts from scratch. The bitmap in memory is kept.
+    */
+   public void finish() {
+      if (stored) { delete(); stored = false; }
+      unsaved = 0;
+   }
+
+}
@@ -33,8 +33,7 @@ import static de.fahimu.android.db.SQLite.MIN_TSTAMP;
 import static de.fahimu.android.db.Trigger.Type.AFTER_DELETE;
 import static de.fahimu.android.db.Trigger.Type.AFTER_INSERT;
 import static de.fahimu.android.db.Trigger.Type.AFTER_UPDATE;
-import static de.fahimu.schlib.db.Lending.ISSUE;
-import static de.fahimu.schlib.db.Lending.RETURN;
+import static de.fahimu.schlib.db.Lending.OPEN;
 
 /**
  * A in-memory representation of one row of table {@code users}.
@@ -278,6 +277,28 @@ public final class User extends Row {
       return user;
    }
 
+   /**
+    * Returns the {@code User} with the specified row id or {@code null} if there is no such {@code User}.
+    *
+    * @param oid
+    *       the value of column {@code _id}.
+    * @return the {@code User} with the specified row id or {@code null}.
+    */
+   @Nullable
+   static User getByOid(long oid) {
+      return User.get(OID + "=?", oid);
+   }
+
+   /**
+    * Returns a copy of this {@code User}, which may be changed without changing this {@code User}.
+    *
+    * @return a copy of this {@code User}.
+    */
+   @NonNull
+   User copy() {
+      return copyTo(new User());
+   }
+
    @NonNull
    public static User getByIdcard(Idcard idcard) {
       return getNonNull(idcard.getUid());
@@ -305,22 +326,21 @@ public final class User extends Row {
 
    /**
     * Returns a list of all pupils, ordered by {@code name2}, {@code name1} and {@code serial}.
-    * An additional column {@link Lending#ISSUE} is added which is not null if any book is issued to this pupil.
+    * An additional column {@link Lending#OPEN} is added with the number of books issued to this pupil.
     * <p> This method will be called to populate the list in {@link StocktakingUsersActivity}. </p>
     *
     * @return a list of all pupils, ordered by {@code name2}, {@code name1} and {@code serial}.
     */
    @NonNull
    public static ArrayList<User> getPupilsForStocktaking() {
-      // SELECT users._id AS _id, users.uid AS uid, role, name2, name1, serial, nbooks, idcard, issue
-      //    FROM users LEFT JOIN lendings ON users.uid=lendings.uid AND return ISNULL
-      //    WHERE role='pupil' GROUP BY users.uid ORDER BY name2, name1, serial ;
-      Values columns = new Values(SQLite.alias(TAB, OID), SQLite.alias(TAB, UID),
-            ROLE, NAME2, NAME1, SERIAL, NBOOKS, IDCARD, ISSUE);
-      String table = App.format("%1$s LEFT JOIN %2$s ON %1$s.%3$s=%2$s.%3$s AND %4$s ISNULL",
-            TAB, Lending.TAB, UID, RETURN);
+      // SELECT users._id AS _id, uid, role, name2, name1, serial, nbooks, idcard, IFNULL(open,0) AS open
+      //    FROM users LEFT JOIN open_lendings_uid ON uid=open_lendings_uid._id
+      //    WHERE role='pupil' ORDER BY name2, name1, serial ;
+      String open = App.format("IFNULL(%1$s,0) AS %1$s", OPEN);
+      Values columns = new Values(SQLite.alias(TAB, OID), UID, ROLE, NAME2, NAME1, SERIAL, NBOOKS, IDCARD, open);
+      String table = App.format("%1$s LEFT JOIN %2$s ON %3$s=%2$s.%4$s", TAB, Lending.TAB_OLU, UID, OID);
       String order = App.format("%s, %s, %s", NAME2, NAME1, SERIAL);
-      return SQLite.get(User.class, table, columns, TAB + "." + UID, order, ROLE + "=?", PUPIL);
+      return SQLite.get(User.class, table, columns, null, order, ROLE + "=?", PUPIL);
    }
 
    /**
@@ -537,8 +557,24 @@ public final class User extends Row {
       return (User) (idcard == null ? setNull(IDCARD) : setLong(IDCARD, idcard.getId()));
    }
 
+   /**
+    * Returns {@code true} if any book is issued to this user.
+    * <p> Precondition: this user was returned by {@link #getPupilsForStocktaking()}. </p>
+    *
+    * @return {@code true} if any book is issued to this user.
+    */
    public boolean hasBooks() {
-      return values.notNull(ISSUE);
+      return values.getInt(OPEN) > 0;
+   }
+
+   /**
+    * Returns the number of books currently issued to this user, which may be compared to {@link #getNbooks()}.
+    * Reads a single row from the counters maintained by the triggers of table {@code lendings}.
+    *
+    * @return the number of books currently issued to this user.
+    */
+   public int getIssuedCount() {
+      return Lending.countIssuedByUser(getUid());
    }
 
    public int getMinSerial() {
@@ -34,7 +34,52 @@ final class Barcode128C extends Element {
    private static final String START = "211232";         // 105
    private static final String STOP  = "2331112" + "0";  // 106 + '0': make STOP.length() even to simplify algorithms
 
-   private final String data;
+   /**
+    * A single symbol of the barcode, painted as a Form XObject, so the bars of each symbol are written only once
+    * per document. The bounding box is {@code [0 0 modules 1]}, where {@code modules} is the width of the symbol.
+    */
+   private static final class Symbol extends Element {
+      private final String pattern;
+      private final int    modules;
+
+      Symbol(String pattern) {
+         this.pattern = pattern;
+         int modules = 0;
+         for (int i = 0; i < pattern.length(); i++) { modules += pattern.charAt(i) - '0'; }
+         this.modules = modules;
+      }
+
+      @Override
+      ContentWriter write(ContentWriter content) {
+         for (int x = 0, i = 0; i < pattern.length(); i += 2) {
+            int s1 = pattern.charAt(i) - '0', s2 = pattern.charAt(i + 1) - '0';
+            // x 0 s1 1 re: Append a rectangle to the current path as a complete subpath,
+            // with lower-left corner (x, 0) and dimensions (s1, 1) (Section 4.4.1)
+            content.num(x).num(0).num(s1).num(1).opLine("re");
+            x += (s1 + s2);
+         }
+         // f: Fills the insides of all rectangles with the non-stroking color (Section 4.4.2)
+         return content.opLine("f");
+      }
+
+      /**
+       * Paints this symbol at the current position of the specified content stream.
+       */
+      ContentWriter paint(ContentWriter content) {
+         return content.form(pattern, this, modules, 1);
+      }
+   }
+
+   private static final Symbol[] SYMBOLS = new Symbol[CODES.length];
+
+   static {
+      for (int i = 0; i < CODES.length; i++) { SYMBOLS[i] = new Symbol(CODES[i]); }
+   }
+
+   private static final Symbol START_SYMBOL = new Symbol(START);
+   private static final Symbol STOP_SYMBOL  = new Symbol(STOP);
+
+   private final CharSequence data;
    private final double width;
    private final double height;
 
@@ -50,54 +95,49 @@ final class Barcode128C extends Element {
     *       the height of the barcode in pt.
     */
    @WorkerThread
-   Barcode128C(String data, double width, double height) {
+   Barcode128C(CharSequence data, double width, double height) {
       this.data = data;
       this.width = width;
       this.height = height;
    }
 
+   /**
+    * Writes the drawing instructions to the specified content stream.
+    * Every symbol is painted as a Form XObject, shifted by 11 modules from the previous one.
+    *
+    * @param content
+    *       the content stream of the page where the instructions should be written to.
+    */
+   @Override
    @WorkerThread
-   private String calculateCode() {
-      int checksum = 105;          // value of START CODE C
+   ContentWriter write(ContentWriter content) {
       int len = data.length() / 2;
-      StringBuilder code = new StringBuilder(6 * (1 + len + 1) + 8).append(START);
+      // We know that the width of every symbol is 11 modules, except STOP (width is 13)
+      final double sum = 11 * (1 + len + 1) + 13;
+
+      // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
+      // 0 g: Set non-stroking color space to DeviceGray and non-stroking gray level to 0 (Section 4.5.7)
+      // w/sum 0 0 h 0 0 cm: Modify CTM to [w/sum 0 0 h 0 0], meaning scale to [w/sum h] (Section 4.3.3 and 4.2.2)
+      content.op("q").num(0).op("g").num(width / sum).num(0).num(0).num(height).num(0).num(0).opLine("cm");
+      START_SYMBOL.paint(content);
 
+      int checksum = 105;          // value of START CODE C
       for (int i = 0; i < len; i++) {
          int value = 10 * (data.charAt(2 * i) - '0') + (data.charAt(2 * i + 1) - '0');
          checksum += (i + 1) * value;
-         code.append(CODES[value]);
+         SYMBOLS[value].paint(shift(content));
       }
-      return code.append(CODES[checksum % 103]).append(STOP).toString();
+      SYMBOLS[checksum % 103].paint(shift(content));
+      STOP_SYMBOL.paint(shift(content));
+      // Q: Pop the graphics state stack (Section 4.3.3)
+      return content.opLine("Q");
    }
 
    /**
-    * Writes the drawing instructions to the specified PDF Document.
-    *
-    * @param document
-    *       the PDF Document where the instructions should be written to.
+    * 1 0 0 1 11 0 cm: Modify CTM to [1 0 0 1 11 0], meaning translation by 11 modules (Section 4.3.3 and 4.2.2)
     */
-   @Override
-   @WorkerThread
-   Document write(Document document) {
-      String code = calculateCode();
-      // We know that the sum of the 6 numeric values of every code is 11, except STOP (sum is 13)
-      final double sum = 11 * (1 + data.length() / 2 + 1) + 13;
-
-      // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
-      // 0 g: Set non-stroking color space to DeviceGray and non-stroking gray level to 0 (Section 4.5.7)
-      // w 0 0 h 0 0 cm: Modify CTM to [w 0 0 h 0 0], meaning scale to [w h] (Section 4.3.3 and 4.2.2)
-      document.write("q 0 g %.8f 0 0 %.8f 0 0 cm\n", width, height);
-
-      for (int x = 0, i = 0; i < code.length(); i += 2) {
-         int s1 = code.charAt(i) - '0', s2 = code.charAt(i + 1) - '0';
-         // x/sum 0 s1/sum 1 re: Append a rectangle to the current path as a complete subpath,
-         // with lower-left corner (x/sum, 0) and dimensions (s1/sum, 1) (Section 4.4.1)
-         document.write("%.8f 0 %.8f 1 re\n", x / sum, s1 / sum);
-         x += (s1 + s2);
-      }
-      // f: Fills the insides of all rectangles with the non-stroking color (Section 4.4.2)
-      // Q: Pop the graphics state stack (Section 4.3.3)
-      return document.write("f Q\n");
+   private static ContentWriter shift(ContentWriter content) {
+      return content.num(1).num(0).num(0).num(1).num(11).num(0).opLine("cm");
    }
 
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ import android.support.annotation.StringRes;
 import android.support.annotation.WorkerThread;
 
 
+import java.nio.CharBuffer;
 import java.util.List;
 
 import de.fahimu.schlib.anw.SerialNumber;
@@ -43,10 +44,10 @@ abstract class BarcodeDocument extends Document {
    }
 
    @WorkerThread
-   abstract void writeSerial(int count, String code128, String serialDisplay);
+   abstract void writeSerial(ContentWriter content, int count, CharSequence code128, String serialDisplay);
 
    @WorkerThread
-   abstract void finishPage(String pagePrefix, int page);
+   abstract void finishPage(ContentWriter content, String pagePrefix, int page);
 
    /** {@inheritDoc} */
    @Override
@@ -56,22 +57,75 @@ abstract class BarcodeDocument extends Document {
    /** {@inheritDoc} */
    @Override
    @WorkerThread
-   final void writeAsync(AsyncDocumentWriter asyncDocumentWriter) {
-      int count = 0, currentPage = serials.get(0).getPage();
+   final String getFingerprintSource() {
+      StringBuilder b = new StringBuilder(getClass().getName());
       for (Serial serial : serials) {
-         if (asyncDocumentWriter.isCancelled()) { return; }
-         if (serial.getPage() != currentPage) {
-            finishPage(pagePrefix, currentPage);
+         b.append(' ').append(serial.getId()).append(':').append(serial.getPage());
+      }
+      return b.toString();
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   @WorkerThread
+   final int getExpectedPages() {
+      int pages = 0;
+      for (int index = 0; index < serials.size(); index++) {
+         if (index == 0 || serials.get(index).getPage() != serials.get(index - 1).getPage()) { pages += 1; }
+      }
+      return pages;
+   }
+
+   /** {@inheritDoc} */
+   @Override
+   @WorkerThread
+   final void writeAsync(AsyncDocumentWriter asyncDocumentWriter) {
+      int[] ids = new int[serials.size()];
+      int index = 0;
+      for (Serial serial : serials) { ids[index++] = serial.getId(); }
+      char[] codes = new char[SerialNumber.CODE128_LENGTH * ids.length];
+      SerialNumber.getCode128(ids, ids.length, codes);
+
+      String[] displays = new String[ids.length];
+      for (index = 0; index < ids.length; index++) { displays[index] = serials.get(index).getDisplayId(); }
+
+      int first = 0;
+      for (index = 1; index <= ids.length; index++) {
+         if (index == ids.length || serials.get(index).getPage() != serials.get(first).getPage()) {
+            if (asyncDocumentWriter.isCancelled()) { return; }
+            writePage(new SerialPage(codes, displays, first, index, serials.get(first).getPage()));
             asyncDocumentWriter.onPageWrite();
+            first = index;
+         }
+      }
+   }
+
+   /**
+    * The serials from {@code first} (inclusive) to {@code last} (exclusive), which are printed on the same page.
+    */
+   private final class SerialPage implements Page {
+      private final char[]   codes;
+      private final String[] displays;
+      private final int      first, last, page;
+
+      SerialPage(char[] codes, String[] displays, int first, int last, int page) {
+         this.codes = codes;
+         this.displays = displays;
+         this.first = first;
+         this.last = last;
+         this.page = page;
+      }
 
-            writeNewPage();
-            count = 0; currentPage = serial.getPage();
+      @Override
+      @WorkerThread
+      public void render(@NonNull ContentWriter content) {
+         for (int index = first; index < last && !isCancelled(); index++) {
+            int offset = SerialNumber.CODE128_LENGTH * index;
+            CharSequence code128 = CharBuffer.wrap(codes, offset, SerialNumber.CODE128_LENGTH);
+            writeSerial(content, index - first, code128, displays[index]);
          }
-         writeSerial(count, SerialNumber.getCode128(serial.getId()), serial.getDisplayId());
-         count += 1;
+         finishPage(content, pagePrefix, page);
       }
-      finishPage(pagePrefix, currentPage);
-      asyncDocumentWriter.onPageWrite();
    }
 
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+/*
+ * ContentWriter.java
+ *
+ * Copyright 2017 by Thomas Hirsch, schlib@fahimu.de
+ */
+
+package de.fahimu.schlib.pdf;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import de.fahimu.android.app.App;
+import de.fahimu.android.share.ExternalOutputStream;
+
+/**
+ * A {@code ContentWriter} writes the operands and operators of a PDF content stream (Section 3.7.1)
+ * Windows 1252 encoded into a growable byte buffer.
+ * Numbers are converted to digits directly, without boxing and without a {@link java.util.Formatter}.
+ * Every operand and operator is followed by a space, except the operators written by {@link #opLine(String)},
+ * which are followed by a newline.
+ *
+ * @author Thomas Hirsch, schlib@fahimu.de
+ * @version 1.0, 01.10.2017
+ * @since SchoolLibrary 1.0
+ */
+final class ContentWriter {
+
+   /** The default number of decimal places of real numbers (Section 3.2.2). */
+   static final int DECIMALS = 8;
+
+   private static final long[] POW10 = {
+         1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+   };
+
+   @Nullable
+   private final Document document;
+
+   private byte[] buffer;
+   private int    size;
+
+   /**
+    * Creates a new {@code ContentWriter} with the specified initial capacity.
+    *
+    * @param capacity
+    *       the initial capacity of the buffer in bytes.
+    * @param document
+    *       the document that defines the Form XObjects painted by {@link #form(String, Element, double, double)},
+    *       or {@code null} if this writer writes the content of a form.
+    */
+   ContentWriter(int capacity, @Nullable Document document) {
+      this.document = document;
+      buffer = new byte[capacity];
+   }
+
+   private void ensureCapacity(int count) {
+      if (size + count > buffer.length) {
+         buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, size + count));
+      }
+   }
+
+   private ContentWriter put(char c) {
+      ensureCapacity(1);
+      buffer[size++] = (byte) c;
+      return this;
+   }
+
+   /**
+    * Writes the decimal digits of the specified non-negative value.
+    */
+   private void putDigits(long value, int digits) {
+      ensureCapacity(digits);
+      for (int i = size + digits - 1; i >= size; i--) {
+         buffer[i] = (byte) ('0' + value % 10);
+         value /= 10;
+      }
+      size += digits;
+   }
+
+   private void putLong(long value) {
+      if (value < 0) { put('-'); value = -value; }
+      int digits = 1;
+      for (long v = value; v >= 10; v /= 10) { digits++; }
+      putDigits(value, digits);
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Appends the specified integer operand.
+    *
+    * @param value
+    *       the value.
+    * @return this writer.
+    */
+   ContentWriter num(int value) {
+      putLong(value);
+      return put(' ');
+   }
+
+   /**
+    * Appends the specified real operand with {@link #DECIMALS} decimal places.
+    *
+    * @param value
+    *       the value.
+    * @return this writer.
+    */
+   ContentWriter num(double value) {
+      return num(value, DECIMALS);
+   }
+
+   /**
+    * Appends the specified real operand, rounded to the specified number of decimal places.
+    * Trailing zeros of the fractional part are omitted.
+    *
+    * @param value
+    *       the value.
+    * @param decimals
+    *       the number of decimal places (0 to 9).
+    * @return this writer.
+    */
+   ContentWriter num(double value, int decimals) {
+      long scale = POW10[decimals];
+      long scaled = Math.round(Math.abs(value) * scale);
+      if (value < 0 && scaled != 0) { put('-'); }
+      putLong(scaled / scale);
+      long fraction = scaled % scale;
+      if (fraction != 0) {
+         while (fraction % 10 == 0) { fraction /= 10; decimals--; }
+         put('.');
+         putDigits(fraction, decimals);
+      }
+      return put(' ');
+   }
+
+   /**
+    * Appends the specified name operand, prefixed by {@code '/'} (Section 3.2.4).
+    *
+    * @param name
+    *       the name without the leading {@code '/'}.
+    * @return this writer.
+    */
+   ContentWriter name(@NonNull String name) {
+      put('/');
+      return chars(name).put(' ');
+   }
+
+   /**
+    * Appends the specified literal string operand, enclosed in parentheses (Section 3.2.3).
+    * The characters {@code '\'}, {@code '('} and {@code ')'} are escaped.
+    *
+    * @param string
+    *       the string.
+    * @return this writer.
+    */
+   ContentWriter string(@NonNull CharSequence string) {
+      put('(');
+      for (int i = 0; i < string.length(); i++) {
+         char c = string.charAt(i);
+         if (c == '\\' || c == '(' || c == ')') { put('\\'); }
+         putWinAnsi(c);
+      }
+      return put(')').put(' ');
+   }
+
+   /**
+    * Appends the specified operator, followed by a space.
+    *
+    * @param operator
+    *       the operator.
+    * @return this writer.
+    */
+   ContentWriter op(@NonNull String operator) {
+      return chars(operator).put(' ');
+   }
+
+   /**
+    * Appends the specified operator, followed by a newline.
+    *
+    * @param operator
+    *       the operator.
+    * @return this writer.
+    */
+   ContentWriter opLine(@NonNull String operator) {
+      return chars(operator).put('\n');
+   }
+
+   /**
+    * Paints the Form XObject identified by the specified {@code key} with the {@code Do} operator (Section 4.9),
+    * after defining it with the content written by the specified {@code element} if necessary.
+    *
+    * @param key
+    *       the key that determines the content of the form.
+    * @param element
+    *       the element that writes the content of the form.
+    * @param width
+    *       the width of the bounding box of the form.
+    * @param height
+    *       the height of the bounding box of the form.
+    * @return this writer.
+    * @see Document#getFormName(String, Element, double, double)
+    */
+   ContentWriter form(@NonNull String key, @NonNull Element element, double width, double height) {
+      if (document == null) { throw new IllegalStateException("nested forms are not supported"); }
+      return name(document.getFormName(key, element, width, height)).opLine("Do");
+   }
+
+   /**
+    * Appends the specified characters as they are, e. g. an already escaped string or a part of an array.
+    *
+    * @param chars
+    *       the characters.
+    * @return this writer.
+    */
+   ContentWriter chars(@NonNull CharSequence chars) {
+      ensureCapacity(chars.length());
+      for (int i = 0; i < chars.length(); i++) {
+         putWinAnsi(chars.charAt(i));
+      }
+      return this;
+   }
+
+   private void putWinAnsi(char c) {
+      if ((c >= '\u0080' && c <= '\u009f') || c > '\u00ff') {
+         throw new RuntimeException(App.format("char \\u%04x not WinAnsiEncoding compatible", (int) c));
+      }
+      put(c);
+   }
+
+   /* ============================================================================================================== */
+
+   /**
+    * Returns the number of bytes written since the last {@link #reset()}.
+    *
+    * @return the number of bytes written since the last {@link #reset()}.
+    */
+   int size() {
+      return size;
+   }
+
+   /**
+    * Discards the written bytes, but keeps the buffer for reuse.
+    */
+   void reset() {
+      size = 0;
+   }
+
+   /**
+    * Writes the bytes written since the last {@link #reset()} to the specified output stream.
+    *
+    * @param outputStream
+    *       the output stream.
+    */
+   void writeTo(@NonNull ExternalOutputStream outputStream) {
+      outputStream.write(buffer, 0, size);
+   }
+
+   /**
+    * Compresses the bytes written since the last {@link #reset()} with the specified {@code deflater}
+    * and writes the compressed bytes to the specified output stream (Section 3.3.3 - FlateDecode Filter).
+    *
+    * @param outputStream
+    *       the output stream.
+    * @param deflater
+    *       the deflater, which is reset before it is used.
+    * @param chunk
+    *       a buffer for the compressed bytes.
+    * @return the number of compressed bytes.
+    */
+   int deflateTo(@NonNull ExternalOutputStream outputStream, @NonNull Deflater deflater, @NonNull byte[] chunk) {
+      deflater.reset();
+      deflater.setInput(buffer, 0, size);
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+         int count = deflater.deflate(chunk);
+         outputStream.write(chunk, 0, count);
+         length += count;
+      }
+      return length;
+   }
+
+}
@@ -7,22 +7,42 @@
 package de.fahimu.schlib.pdf;
 
 import android.os.AsyncTask;
+import android.os.Process;
+import android.os.SystemClock;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.WorkerThread;
+import android.util.SparseIntArray;
 
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 
 import de.fahimu.android.app.Log;
 import de.fahimu.android.app.TaskRegistry;
 import de.fahimu.android.share.ExternalFile;
 import de.fahimu.android.share.ExternalOutputStream;
 import de.fahimu.schlib.app.App;
+import de.fahimu.schlib.app.BuildConfig;
 import de.fahimu.schlib.db.Use;
 import de.fahimu.schlib.db.User;
 import de.fahimu.schlib.share.FileType;
@@ -59,8 +79,12 @@ public abstract class Document {
    private ExternalFile         externalFile;
    private ExternalOutputStream outputStream;
 
+   private String title, subject, author, creationDate;
+
    /**
-    * Opens an ExternalOutputStream and writes the PDF header and specified metadata to the document.
+    * Sets the file name and the metadata of the document. The file is not opened before the document is written,
+    * so documents waiting for the {@link #documentWriter} hold neither a file nor any buffers.
+    * The content streams of the pages will be compressed.
     *
     * @param title
     *       the title of the document.
@@ -69,30 +93,64 @@ public abstract class Document {
     * @return this PDF Document.
     */
    final Document open(String title, String subject) {
+      return open(title, subject, true);
+   }
+
+   /**
+    * Sets the file name and the metadata of the document.
+    *
+    * @param title
+    *       the title of the document.
+    * @param subject
+    *       the subject of the document.
+    * @param compress
+    *       if {@code true}, the content streams of the pages will be compressed with the FlateDecode filter.
+    * @return this PDF Document.
+    */
+   final Document open(String title, String subject, boolean compress) {
+      this.compress = compress;
+      this.title = title;
+      this.subject = subject;
+      User user = Use.getLoggedInNonNull().getUser();
+      this.author = user.getName1() + " " + user.getName2();
+      this.creationDate = new SimpleDateFormat("yyyyMMddHHmmssZ", Locale.US).format(new Date());
       externalFile = new ExternalFile(FileType.PRINTS, title.replace('/', '-') + ".pdf");
+      return this;
+   }
+
+   /**
+    * Opens an ExternalOutputStream, allocates the buffers and writes the PDF header and metadata to the document.
+    */
+   @WorkerThread
+   private void begFile() {
+      while (freeContents.remainingCapacity() > 0) {
+         freeContents.add(new ContentWriter(16 * 1024, this));
+      }
+      if (compress) {
+         deflater = new Deflater();
+         deflated = new byte[8192];
+      }
       outputStream = ExternalOutputStream.newInstance(externalFile);
 
       // write the File Header (Section 3.4.1).
-      write("%%PDF-1.6\n");                           // PDF 1.6 needed for ViewerPreferences/PrintScaling=None
-      write("%%\u00E4\u00F6\u00FC\u00DF\n");          // comment line to mark the document as binary
+      writeFile("%%PDF-1.6\n");                       // PDF 1.6 needed for ViewerPreferences/PrintScaling=None
+      writeFile("%%\u00E4\u00F6\u00FC\u00DF\n");      // comment line to mark the document as binary
 
       // start the File Body (Section 3.4.2).
 
       // Object 1: the Metadata dictionary
-      User user = Use.getLoggedInNonNull().getUser();
-      String author = user.getName1() + " " + user.getName2();
-      begObj("<<").write("/Title(%s)/Author(%s)/Subject(%s)", title, author, subject);
-      write("/Creator(%1$s)/Producer(%1$s)", "School-Library V1.06 (\u00A9 2017)");
-      String d = new SimpleDateFormat("yyyyMMddHHmmssZ", Locale.US).format(new Date());
-      write("/CreationDate(D:%1$s'%2$s')/ModDate(D:%1$s'%2$s')", d.substring(0, 17), d.substring(17)).endObj(">>");
+      begObj("<<");
+      if (fingerprint != null) { writeFile("/Keywords(%s)", fingerprint); }    // first, see isUpToDate()
+      writeFile("/Title(%s)/Author(%s)/Subject(%s)", title, author, subject);
+      writeFile("/Creator(%1$s)/Producer(%1$s)", PRODUCER);
+      String d = creationDate;
+      writeFile("/CreationDate(D:%1$s'%2$s')/ModDate(D:%1$s'%2$s')", d.substring(0, 17), d.substring(17)).endObj(">>");
 
       // Object 2: the Font dictionary for 'Helvetica'
-      begObj("<<").write("/Type/Font/Subtype/Type1/Encoding/WinAnsiEncoding/BaseFont/Helvetica").endObj(">>");
+      begObj("<<").writeFile("/Type/Font/Subtype/Type1/Encoding/WinAnsiEncoding/BaseFont/Helvetica").endObj(">>");
 
       // Object 3: the MediaBox array
-      begObj("[").write("0 0 %.8f %.8f", PAGE_WIDTH, PAGE_HEIGHT).endObj("]");
-
-      return begPage();
+      begObj("[").writeFile("0 0 %.8f %.8f", PAGE_WIDTH, PAGE_HEIGHT).endObj("]");
    }
 
    /**
@@ -102,6 +160,92 @@ public abstract class Document {
 
    private final byte[] buffer = new byte[1024];
 
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   /**
+    * A {@code Page} renders the content stream of one page. The content of a page must not depend on other pages,
+    * so the pages may be rendered concurrently by the {@link #pageRenderer}.
+    */
+   interface Page {
+      /**
+       * Writes the content stream of this page.
+       * <p> Called by one of the threads of the {@link #pageRenderer}. </p>
+       *
+       * @param content
+       *       the writer for the content stream, which is empty.
+       */
+      @WorkerThread
+      void render(@NonNull ContentWriter content);
+   }
+
+   /**
+    * Returns a new executor with the specified number of threads, which run with background priority, so they
+    * don't starve the main thread, and terminate when they have been idle for some seconds.
+    * Tasks wait in an unbounded queue and are started in the order they were submitted.
+    */
+   private static ThreadPoolExecutor newBackgroundExecutor(final String name, int threads) {
+      ThreadFactory threadFactory = new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         @Override
+         public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+               @Override
+               public void run() {
+                  Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                  runnable.run();
+               }
+            }, name + "-" + count.incrementAndGet());
+         }
+      };
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), threadFactory);
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+   }
+
+   /**
+    * The number of documents written concurrently. Further documents wait in the queue of the
+    * {@link #documentWriter} without holding a file or any buffers.
+    */
+   private static final int WRITERS = 2;
+
+   /**
+    * Runs the {@link AsyncDocumentWriter}s, at most {@link #WRITERS} at the same time.
+    */
+   private static final ExecutorService documentWriter = newBackgroundExecutor("DocumentWriter", WRITERS);
+
+   /** The number of pages rendered concurrently; one core is left for the generating thread and the writer. */
+   private static final int RENDERERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+   /**
+    * Renders the pages into their content streams, in any order and concurrently.
+    */
+   private static final ExecutorService pageRenderer = newBackgroundExecutor("PageRenderer", RENDERERS);
+
+   /**
+    * Writes the rendered pages to the PDF files, so compressing a page overlaps with rendering the next ones.
+    * All pages of a document are written in the order they were submitted, because there is only one thread,
+    * which waits for each page to be rendered. Therefore, the file offsets in {@link #objOffset} stay sequential.
+    */
+   private static final ExecutorService pageWriter = newBackgroundExecutor("PageWriter", 1);
+
+   private boolean compress;
+
+   /** Only used by the {@link #pageWriter}. */
+   private Deflater deflater;
+   private byte[]   deflated;
+
+   /**
+    * The content streams which are not in use. Each submitted page uses one of them until it has been written
+    * by the {@link #pageWriter}; if all are in use, the generating thread waits, so it can't run far ahead.
+    */
+   private final ArrayBlockingQueue<ContentWriter> freeContents = new ArrayBlockingQueue<>(RENDERERS + 2);
+
+   private Future<?> lastPage;
+
+   private volatile RuntimeException pageFailure;
+
    /**
     * Writes the specified string Windows 1252 encoded to the PDF file.
     *
@@ -111,7 +255,7 @@ public abstract class Document {
     *       the list of arguments passed to the formatter.
     * @return this document.
     */
-   final Document write(String format, Object... args) {
+   private Document writeFile(String format, Object... args) {
       String s = App.format(format, args);
       int length = s.length();
       final byte[] buffer = (length <= this.buffer.length) ? this.buffer : new byte[length];
@@ -135,79 +279,272 @@ public abstract class Document {
 
    private Document begObj(String beg) {
       objOffset.add(offset);                 // memorize the current file offset for the Cross-Reference Table
-      write("%d 0 obj\n%s", objOffset.size(), beg);
+      writeFile("%d 0 obj\n%s", objOffset.size(), beg);
       return this;
    }
 
    private Document endObj(String end) {
-      write("%s\nendobj\n", end);
+      writeFile("%s\nendobj\n", end);
       return this;
    }
 
+   /** The object IDs of the content streams of the pages. Only used by the {@link #pageWriter}. */
+   private final List<Integer> pageObjects = new ArrayList<>();
+
    /**
-    * The file offset for calculating the stream length.
+    * Appends the specified page to this document. The page is rendered by the {@link #pageRenderer} and then
+    * written by the {@link #pageWriter}, after all pages appended before.
+    *
+    * @param page
+    *       the page.
     */
-   private int streamOffset;
-
-   private Document begPage() {
-      begObj("<<").write("/Length %d 0 R>>stream\n", objOffset.size() + 1);
-      streamOffset = offset;                 // memorize the current file offset for the stream length
-      return this;
+   @WorkerThread
+   final void writePage(@NonNull final Page page) {
+      final ContentWriter content;
+      try {
+         content = freeContents.take();
+      } catch (InterruptedException e) {
+         throw new CancellationException();     // the writing task has been cancelled
+      }
+      final Future<ContentWriter> rendered = pageRenderer.submit(new Callable<ContentWriter>() {
+         @Override
+         public ContentWriter call() {
+            if (pageFailure == null && !isCancelled()) { page.render(content); }
+            return content;
+         }
+      });
+      lastPage = pageWriter.submit(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               rendered.get();
+               if (pageFailure == null && !isCancelled()) { pageObjects.add(writeStream(content, "")); }
+            } catch (InterruptedException e) {
+               pageFailure = new RuntimeException("Document:writePage", e);
+            } catch (ExecutionException e) {
+               Throwable cause = e.getCause();
+               pageFailure = (cause instanceof RuntimeException) ? (RuntimeException) cause :
+                             new RuntimeException("Document:writePage", cause);
+            } catch (RuntimeException e) {
+               pageFailure = e;
+            } finally {
+               content.reset();
+               freeContents.add(content);
+            }
+         }
+      });
    }
 
-   private Document endPage() {
-      int length = offset - streamOffset;
+   /**
+    * Writes a stream object with the specified content and dictionary entries and the object with its length.
+    * <p> Called by the {@link #pageWriter}. </p>
+    *
+    * @return the object ID of the stream object.
+    */
+   private int writeStream(ContentWriter stream, String entries) {
+      String filter = compress ? "/Filter/FlateDecode" : "";
+      begObj("<<").writeFile("%s/Length %d 0 R%s>>stream\n", entries, objOffset.size() + 1, filter);
+      int id = objOffset.size();
+      int length;
+      if (compress) {
+         length = stream.deflateTo(outputStream, deflater, deflated);
+      } else {
+         length = stream.size();
+         stream.writeTo(outputStream);
+      }
+      offset += length;
       endObj("\nendstream").begObj(Integer.toString(length)).endObj("");
-      return this;
+      return id;
+   }
+
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   /** The names of the Form XObjects already defined in this document, by their key. */
+   private final HashMap<String,String> formNames = new HashMap<>();
+
+   /** The number of the Form XObject names handed out so far. */
+   private int formCount;
+
+   /** The object IDs of the Form XObjects, by the number of their names. Only used by the {@link #pageWriter}. */
+   private final SparseIntArray formObjects = new SparseIntArray();
+
+   /**
+    * Returns the name of the Form XObject (Section 4.9) identified by the specified {@code key}, which must
+    * determine the content of the form. If there is no such form yet, a new form is defined with the content
+    * written by the specified {@code element} and the bounding box {@code [0 0 width height]}.
+    * The form is written to the PDF file only once, and may then be painted on any page by the {@code Do} operator.
+    *
+    * @param key
+    *       the key that determines the content of the form.
+    * @param element
+    *       the element that writes the content of the form.
+    * @param width
+    *       the width of the bounding box.
+    * @param height
+    *       the height of the bounding box.
+    * @return the name of the Form XObject.
+    */
+   @NonNull
+   final synchronized String getFormName(String key, Element element, double width, double height) {
+      String name = formNames.get(key);
+      if (name == null) {
+         name = reserveFormName();
+         formNames.put(key, name);
+         defineForm(name, element, width, height);
+      }
+      return name;
+   }
+
+   /**
+    * Returns the name of a new Form XObject, which may be painted before it is defined by
+    * {@link #defineForm(String, Element, double, double)}. Every reserved form must be defined before the document
+    * is closed.
+    *
+    * @return the name of a new Form XObject.
+    */
+   @NonNull
+   final synchronized String reserveFormName() {
+      return "X" + formCount++;
+   }
+
+   /**
+    * Defines the Form XObject with the specified {@code name} with the content written by the specified
+    * {@code element} and the bounding box {@code [0 0 width height]}.
+    *
+    * @param name
+    *       the name returned by {@link #reserveFormName()}.
+    * @param element
+    *       the element that writes the content of the form.
+    * @param width
+    *       the width of the bounding box.
+    * @param height
+    *       the height of the bounding box.
+    */
+   final synchronized void defineForm(String name, Element element, double width, double height) {
+      final int number = Integer.parseInt(name.substring(1));
+      final ContentWriter form = element.write(new ContentWriter(256, null));
+      final String entries = App.format("/Type/XObject/Subtype/Form/BBox[0 0 %.8f %.8f]" +
+            "/Resources<</Font<</F1 2 0 R>>>>", width, height);
+      pageWriter.execute(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               if (pageFailure == null) { formObjects.put(number, writeStream(form, entries)); }
+            } catch (RuntimeException e) {
+               pageFailure = e;
+            }
+         }
+      });
+   }
+
+   /**
+    * Waits until the {@link #pageWriter} has written all pages.
+    * If no page has been appended, an empty page is appended, because a PDF document needs at least one page.
+    * The wait can't be interrupted, because the file must not be closed while the pageWriter is still writing.
+    */
+   private void awaitPages() {
+      if (lastPage == null) {
+         writePage(new Page() {
+            @Override
+            public void render(@NonNull ContentWriter content) { }
+         });
+      }
+      try {
+         getUninterruptibly(lastPage);
+         // all pages are rendered now, but forms defined while rendering the last pages may still be queued
+         getUninterruptibly(pageWriter.submit(new Runnable() {
+            @Override
+            public void run() { }
+         }));
+      } catch (ExecutionException e) {
+         throw new RuntimeException("Document:awaitPages", e);
+      }
+      if (pageFailure != null) { throw pageFailure; }
    }
 
-   final Document writeNewPage() { return endPage().begPage(); }
+   /**
+    * Waits for the specified {@code future} like {@link Future#get()}, but ignores interrupts until it is done.
+    * The interrupt status of the current thread is restored afterwards.
+    */
+   private static void getUninterruptibly(Future<?> future) throws ExecutionException {
+      boolean interrupted = false;
+      try {
+         while (true) {
+            try {
+               future.get(); return;
+            } catch (InterruptedException e) {
+               interrupted = true;
+            }
+         }
+      } finally {
+         if (interrupted) { Thread.currentThread().interrupt(); }
+      }
+   }
 
-   final Document writeElement(Element element, double x, double y) {
-      write("q 1 0 0 1 %.8f %.8f cm\n", x, y);
-      return element.write(this).write("Q\n");
+   static void writeElement(ContentWriter content, Element element, double x, double y) {
+      content.op("q").num(1).num(0).num(0).num(1).num(x).num(y).opLine("cm");
+      element.write(content).opLine("Q");
    }
 
-   final Document writeElementUpright(Element element, double x, double y) {
-      write("q 0 1 -1 0 %.8f %.8f cm\n", x, y);
-      return element.write(this).write("Q\n");
+   static void writeElementUpright(ContentWriter content, Element element, double x, double y) {
+      content.op("q").num(0).num(1).num(-1).num(0).num(x).num(y).opLine("cm");
+      element.write(content).opLine("Q");
    }
 
-   private void close() {
+   /**
+    * Waits for all pages and closes the file. If the document has been cancelled, the file is closed
+    * without writing the trailer, so the caller must delete the incomplete file.
+    *
+    * @param cancelled
+    *       {@code true} if the document has been cancelled.
+    */
+   private void close(boolean cancelled) {
       try {
          // finish the File Body (Section 3.4.2).
-         endPage();
+         awaitPages();
+         if (cancelled) { return; }
 
-         int count = (objOffset.size() - 3) / 2;      // page count
+         int count = pageObjects.size();              // page count
          int page = objOffset.size() + 1;             // object ID of first page object
          int pages = page + count;                    // object ID of pages object
          int catalog = pages + 1;                     // object ID of catalog object
 
          for (int i = 0; i < count; i++) {
-            begObj("<<").write("/Type/Page/Parent %d 0 R/Contents %d 0 R", pages, 2 * i + 4).endObj(">>");
+            begObj("<<").writeFile("/Type/Page/Parent %d 0 R/Contents %d 0 R", pages, pageObjects.get(i));
+            endObj(">>");
          }
-         begObj("<<").write("/Type/Pages/Resources<</Font<</F1 2 0 R>>>>/MediaBox 3 0 R/Count %d/Kids[", count);
-         for (int i = 0; i < count; i++) { write(" %d 0 R", page + i); }
+         begObj("<<").writeFile("/Type/Pages/Resources<</Font<</F1 2 0 R>>");
+         if (formObjects.size() > 0) {
+            writeFile("/XObject<<");
+            for (int i = 0; i < formObjects.size(); i++) {
+               writeFile("/X%d %d 0 R", formObjects.keyAt(i), formObjects.valueAt(i));
+            }
+            writeFile(">>");
+         }
+         writeFile(">>/MediaBox 3 0 R/Count %d/Kids[", count);
+         for (int i = 0; i < count; i++) { writeFile(" %d 0 R", page + i); }
          endObj("]>>");
 
-         begObj("<<").write("/Type/Catalog/Pages %d 0 R/ViewerPreferences<</PrintScaling/None>>", pages).endObj(">>");
+         begObj("<<").writeFile("/Type/Catalog/Pages %d 0 R/ViewerPreferences<</PrintScaling/None>>", pages);
+         endObj(">>");
 
          // write the Cross-Reference Table (Section 3.4.3).
          int xrefOff = offset;                        // memorize the current file offset for the startxref
-         write("xref\n");
-         write("0 %d\n", 1 + objOffset.size());
-         write("0000000000 65535 f \n");              // first entry (object 0) muss always be free
+         writeFile("xref\n");
+         writeFile("0 %d\n", 1 + objOffset.size());
+         writeFile("0000000000 65535 f \n");          // first entry (object 0) muss always be free
          for (int off : objOffset) {
-            write("%010d 00000 n \n", off);
+            writeFile("%010d 00000 n \n", off);
          }
 
          // write the File Trailer (Section 3.4.4).
-         write("trailer\n");
-         write("<</Info 1 0 R/Root %d 0 R/Size %d>>\n", catalog, 1 + objOffset.size());
-         write("startxref\n");
-         write("%d\n", xrefOff);
-         write("%%%%EOF\n");
+         writeFile("trailer\n");
+         writeFile("<</Info 1 0 R/Root %d 0 R/Size %d>>\n", catalog, 1 + objOffset.size());
+         writeFile("startxref\n");
+         writeFile("%d\n", xrefOff);
+         writeFile("%%%%EOF\n");
       } finally {
+         if (deflater != null) { deflater.end(); }
          outputStream.close();
       }
    }
@@ -222,15 +559,52 @@ public abstract class Document {
       void onPostWrite();
    }
 
+   /**
+    * A {@link WriterListener} which is additionally informed about the progress of each document.
+    */
+   public interface ProgressListener extends WriterListener {
+      /**
+       * Called after each page of the specified document, directly after {@link #onPageWrite()}.
+       *
+       * @param document
+       *       the document.
+       * @param pages
+       *       the number of pages of the document written so far.
+       * @param remainingMillis
+       *       the estimated time until the document will be written (in ms), or {@code -1} if unknown.
+       */
+      @MainThread
+      void onProgress(Document document, int pages, long remainingMillis);
+   }
+
+   /**
+    * Writes the specified documents asynchronously. The documents are queued and at most {@link #WRITERS}
+    * of them are written at the same time. All documents are cancelled by {@link TaskRegistry#cancel()}.
+    *
+    * @param taskRegistry
+    *       the registry of the writing tasks.
+    * @param listener
+    *       the listener, which may be a {@link ProgressListener}.
+    * @param docs
+    *       the documents to write.
+    */
    @MainThread
    public static void writeAsync(TaskRegistry taskRegistry, final WriterListener listener, final Document... docs) {
-      WriterListener multiListener = new WriterListener() {
+      WriterListener multiListener = new ProgressListener() {
          private int onPostWriteCount = docs.length;
 
          @Override
          @MainThread
          public void onPageWrite() { listener.onPageWrite(); }
 
+         @Override
+         @MainThread
+         public void onProgress(Document document, int pages, long remainingMillis) {
+            if (listener instanceof ProgressListener) {
+               ((ProgressListener) listener).onProgress(document, pages, remainingMillis);
+            }
+         }
+
          @Override
          @MainThread
          public void onPostWrite() { if (--onPostWriteCount == 0) { listener.onPostWrite(); } }
@@ -261,15 +635,88 @@ public abstract class Document {
    @WorkerThread
    abstract void writeAsync(AsyncDocumentWriter asyncDocumentWriter);
 
+   /**
+    * Returns the expected number of pages of this document, which is used to estimate the remaining time.
+    * Returns {@code 0} if the number of pages is not known in advance.
+    *
+    * @return the expected number of pages of this document, or {@code 0} if unknown.
+    */
+   @WorkerThread
+   int getExpectedPages() { return 0; }
+
+   /**
+    * Returns a string which contains everything that determines the content of this document besides its
+    * metadata, e. g. the type and parameters of the document and the rows it is made of, or {@code null}
+    * if the document must always be written.
+    *
+    * @return a string which determines the content of this document, or {@code null}.
+    */
+   @WorkerThread
+   String getFingerprintSource() { return null; }
+
+   /** The fingerprint of this document including its metadata, or {@code null} if there is no fingerprint. */
+   private String fingerprint;
+
+   /** The creator and producer of the PDF files. */
+   private static final String PRODUCER = "School-Library V1.06 (\u00A9 2017)";
+
+   /** The last bytes of a completely written PDF file. */
+   private static final String EOF = "%%EOF\n";
+
+   /**
+    * Computes the fingerprint of this document and returns {@code true} if the existing file has been written
+    * completely and has the same fingerprint, so it need not be written again.
+    * The fingerprint is written as the first entry of the Metadata dictionary, near the start of the file.
+    * It includes the producer and app version, which change with the layout, and whether pages are compressed.
+    */
+   @WorkerThread
+   private boolean isUpToDate() {
+      String source = getFingerprintSource();
+      if (source == null) { return false; }
+      try {
+         MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+         String text = App.format("%s %s\ncompress=%b\n%s\n%s\n%s\n%s", PRODUCER, BuildConfig.VERSION_NAME,
+               compress, title, subject, author, source);
+         StringBuilder b = new StringBuilder(40);
+         for (byte d : sha1.digest(text.getBytes(StandardCharsets.UTF_8))) {
+            b.append(Character.forDigit((d >> 4) & 15, 16)).append(Character.forDigit(d & 15, 16));
+         }
+         fingerprint = b.toString();
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException("Document:isUpToDate", e);
+      }
+      String head = new String(externalFile.readHead(256), StandardCharsets.ISO_8859_1);
+      String tail = new String(externalFile.readTail(EOF.length()), StandardCharsets.ISO_8859_1);
+      return head.contains("/Keywords(" + fingerprint + ")") && tail.equals(EOF);
+   }
+
+   /** The task writing this document, or {@code null} if the document is not (yet) written. */
+   private volatile AsyncDocumentWriter asyncWriter;
+
+   /**
+    * Returns {@code true} if writing this document has been cancelled.
+    * The page rendering threads call this method, so they stop within a page.
+    *
+    * @return {@code true} if writing this document has been cancelled.
+    */
+   final boolean isCancelled() {
+      AsyncDocumentWriter asyncWriter = this.asyncWriter;
+      return asyncWriter != null && asyncWriter.isCancelled();
+   }
+
    @MainThread
    private void writeAsync(@NonNull WriterListener listener, @NonNull TaskRegistry taskRegistry) {
-      taskRegistry.add(new AsyncDocumentWriter(listener, taskRegistry));
+      taskRegistry.add(new AsyncDocumentWriter(listener, taskRegistry), documentWriter);
    }
 
    final class AsyncDocumentWriter extends AsyncTask<Void,Void,Void> {
       private final WriterListener listener;
       private final TaskRegistry   taskRegistry;
 
+      private volatile long startTime;
+      private volatile int  expectedPages;
+      private          int  pages;
+
       @MainThread
       AsyncDocumentWriter(@NonNull WriterListener listener, @NonNull TaskRegistry taskRegistry) {
          this.listener = listener;
@@ -281,11 +728,31 @@ public abstract class Document {
       protected Void doInBackground(Void... voids) {
          try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
             if (isEmpty()) {
-               close();
-               externalFile.delete();
+               externalFile.delete();     // delete a previously written version
+            } else if (isUpToDate()) {
+               scope.d("document is up to date");
             } else {
-               writeAsync(this);
-               close();
+               asyncWriter = this;
+               expectedPages = getExpectedPages();
+               startTime = SystemClock.uptimeMillis();
+               begFile();
+               try {
+                  writeAsync(this);
+               } catch (CancellationException e) {
+                  scope.d("write document cancelled by user");
+               } finally {
+                  boolean cancelled = isCancelled();
+                  if (cancelled) {
+                     Thread.interrupted();    // clear the interrupt of cancel(true), the pages are still awaited
+                  }
+                  try {
+                     close(cancelled);   // release the file, even if cancelled
+                  } finally {
+                     asyncWriter = null;
+                     // the file has no trailer, or pages may be missing if cancelled while closing
+                     if (isCancelled()) { externalFile.delete(); }
+                  }
+               }
             }
             taskRegistry.remove(this);
             return null;
@@ -299,11 +766,17 @@ public abstract class Document {
 
       @Override
       @MainThread
-      protected void onProgressUpdate(Void... values) { listener.onPageWrite(); }
-
-      @Override
-      @MainThread
-      protected void onCancelled(Void v) { externalFile.delete(); }
+      protected void onProgressUpdate(Void... values) {
+         listener.onPageWrite();
+         if (listener instanceof ProgressListener) {
+            pages += 1;
+            long remainingMillis = -1;
+            if (expectedPages > pages) {
+               remainingMillis = (SystemClock.uptimeMillis() - startTime) * (expectedPages - pages) / pages;
+            }
+            ((ProgressListener) listener).onProgress(Document.this, pages, remainingMillis);
+         }
+      }
 
       @Override
       @MainThread
@@ -9,6 +9,7 @@ package de.fahimu.schlib.pdf;
 import android.support.annotation.MainThread;
 import android.support.annotation.StringRes;
 import android.support.annotation.WorkerThread;
+import android.util.SparseArray;
 
 
 import java.util.List;
@@ -38,6 +39,11 @@ public final class DunningLetters extends TextDocument {
 
    private final String date;
 
+   /** The names of the user variables of the letter texts, in the order of the values passed to the templates. */
+   private static final String[] VARIABLES = { "DATE", "BOOK", "PERIOD", "ISSUE-DATE", "ISSUE-TIME", "TERM", "DELAY" };
+
+   private final SparseArray<Template> templates = new SparseArray<>();      // resId -> compiled letter text
+
    /**
     * Creates a new {@code DunningLetters} PDF document.
     */
@@ -70,6 +76,9 @@ public final class DunningLetters extends TextDocument {
             User user = lending.getUser();
             boolean isPupil = user.getRole() == Role.PUPIL;
             boolean delayed = lending.isDelayed();
+            String[] values = { date, book.getDisplay(), Integer.toString(book.getPeriod()),
+                                lending.getIssueDate(), lending.getIssueTime(), delayed ? lending.getTermDate() : "",
+                                Integer.toString(lending.getDelay()) };
 
             String text = App.getStr(delayed ?
                                      R.string.pdf_dunning_letters_headline_delayed :
@@ -86,26 +95,27 @@ public final class DunningLetters extends TextDocument {
                add(new SingleLine(0.0, 12, 14, LEFT, text));
             }
             add(new EmptyLine(14));
-            addText(lending, 8, 10, 12, isPupil ?
-                                        R.string.pdf_dunning_letters_text_1_pupil :
-                                        R.string.pdf_dunning_letters_text_1_tutor);
+            addText(values, isPupil ?
+                            R.string.pdf_dunning_letters_text_1_pupil :
+                            R.string.pdf_dunning_letters_text_1_tutor);
             add(new EmptyLine(8));
 
             String colon = ":   ";
+            beginTable(1.0, 0.5, 0, LEFT, LEFT);
             add(new TableRow(0.0, 10, 14, App.getStr(R.string.book_title) + colon, book.getTitle()));
             add(new TableRow(0.0, 10, 14, App.getStr(R.string.book_author) + colon, book.getAuthor()));
             add(new TableRow(0.0, 10, 14, App.getStr(R.string.book_publisher) + colon, book.getPublisher()));
             add(new TableRow(0.0, 10, 14, App.getStr(R.string.book_shelf) + colon, book.getDisplayShelfNumber()));
-            finalizeTable(1.0, 0.5, 8, 0, LEFT, LEFT);
+            finalizeTable(8);
 
             if (delayed) {
                if (isPupil) {
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_text_2_delayed_pupil);
+                  addText(values, R.string.pdf_dunning_letters_text_2_delayed_pupil);
                   add(new EmptyLine(36));
 
                   text = App.getStr(R.string.pdf_dunning_letters_salutation_parents);
                   add(new SingleLine(0.0, 12, 14 + 14, LEFT, text));
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_text_3_delayed_pupil);
+                  addText(values, R.string.pdf_dunning_letters_text_3_delayed_pupil);
                   add(new EmptyLine(24));
 
                   SingleLine cuttingLine = new SingleLine(1.0, 12, 14, LEFT, "");
@@ -113,7 +123,7 @@ public final class DunningLetters extends TextDocument {
                   cuttingLine.appendAnnotatedUnderline(0.0, text, false, 0);
                   add(cuttingLine).add(new EmptyLine(18));
 
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_receipt_text);
+                  addText(values, R.string.pdf_dunning_letters_receipt_text);
                   add(new EmptyLine(24));
 
                   SingleLine signatureLine = new SingleLine(1.0, 12, 14, LEFT, "");
@@ -127,13 +137,13 @@ public final class DunningLetters extends TextDocument {
                         user.getDisplay(), user.getDisplayIdcard());
                   add(new SingleLine(0.75, 8, 10, CENTER, text));
                } else {
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_text_2_delayed_tutor);
+                  addText(values, R.string.pdf_dunning_letters_text_2_delayed_tutor);
                }
             } else {
                if (isPupil) {
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_text_2_no_term_pupil);
+                  addText(values, R.string.pdf_dunning_letters_text_2_no_term_pupil);
                } else {
-                  addText(lending, 8, 10, 12, R.string.pdf_dunning_letters_text_2_no_term_tutor);
+                  addText(values, R.string.pdf_dunning_letters_text_2_no_term_tutor);
                }
             }
             if (page < lendings.size() - 1) {
@@ -143,17 +153,16 @@ public final class DunningLetters extends TextDocument {
       }
    }
 
+   /**
+    * Adds the specified letter text, compiled into a {@link Template} when it is used for the first time.
+    */
    @WorkerThread
-   private void addText(Lending lending, int emptyHeight, int size, int height, @StringRes int resId) {
-      Book book = lending.getBook();
-      String text = replaceUserVariables(App.getStr(resId),
-            "DATE", date, "BOOK", book.getDisplay(), "PERIOD", Integer.toString(book.getPeriod()),
-            "ISSUE-DATE", lending.getIssueDate(), "ISSUE-TIME", lending.getIssueTime(),
-            "TERM", lending.isDelayed() ? lending.getTermDate() : "",
-            "DELAY", Integer.toString(lending.getDelay()));
-      for (String line : text.split("\n")) {
-         add(line.isEmpty() ? new EmptyLine(emptyHeight) : new MultiLine(0.0, size, height, true, line));
+   private void addText(String[] values, @StringRes int resId) {
+      Template template = templates.get(resId);
+      if (template == null) {
+         templates.put(resId, template = new Template(App.getStr(resId), 0.0, 10, 12, 8, true, VARIABLES));
       }
+      template.add(values);
    }
 
-}
\ No newline at end of file
+}
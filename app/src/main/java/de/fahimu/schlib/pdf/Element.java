@@ -16,11 +16,12 @@ package de.fahimu.schlib.pdf;
 abstract class Element {
 
    /**
-    * Writes the drawing instructions to the specified PDF Document.
+    * Writes the drawing instructions to the specified content stream.
     *
-    * @param document
-    *       the PDF Document where the instructions should be written to.
+    * @param content
+    *       the content stream of the page where the instructions should be written to.
+    * @return the specified content stream.
     */
-   abstract Document write(Document document);
+   abstract ContentWriter write(ContentWriter content);
 
 }
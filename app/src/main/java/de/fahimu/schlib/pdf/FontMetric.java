@@ -6,25 +6,17 @@
 
 package de.fahimu.schlib.pdf;
 
-import android.support.annotation.NonNull;
-
-
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
-import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import de.fahimu.android.app.App;
-import de.fahimu.schlib.app.R;
 
 /**
- * The {@code FontMetric} contains a font's metric, load from an Adobe Font Metrics file ({@code *.afm}).
+ * The {@code FontMetric} contains a font's metric, load from the binary font metrics compiled at build time
+ * from an Adobe Font Metrics file ({@code *.afm}) and the Adobe Glyph List (see {@code fontmetrics.gradle}).
  *
  * @author Thomas Hirsch, schlib@fahimu.de
  * @version 1.0, 01.09.2014
@@ -43,111 +35,35 @@ final class FontMetric {
    private int fontBBoxLLY, fontBBoxURY;
 
    /**
-    * Creates a new FontMetric for font {@code resId}. An Adobe Font Metrics file ({@code *.afm}) and
-    * the Adobe Glyph List file ({@code glyphlist.txt}) must be installed in {@code res/raw/}.
+    * Creates a new FontMetric for font {@code resId}. The binary font metrics ({@code *.bin}) must be
+    * generated into {@code res/raw/} by the task {@code compileFontMetrics}.
     *
     * @param resId
     *       the resource identifier to open, as generated by the appt tool.
     */
    FontMetric(int resId) { this.resId = resId; }
 
-   private LineNumberReader openFile(int resId, Charset charset) {
-      InputStream is = App.getInstance().getResources().openRawResource(resId);
-      return new LineNumberReader(new InputStreamReader(is, charset));
-   }
-
-   /**
-    * Returns a Map build from the Adobe Glyph List {@code glyphlist.txt}
-    * that maps glyph names as Strings to their Unicode scalar value as Characters.
-    * A glyph name will only be added to the Map if it {@link #isSupported(char) is supported}.
-    *
-    * @return a Map build from the Adobe Glyph List {@code glyphlist.txt}.
-    *
-    * @throws IOException
-    *       if an error occurred while reading the {@code glyphlist.txt} file.
-    */
-   private Map<String,Character> loadGlyphlist() throws IOException {
-      Map<String,Character> glyphMap = new HashMap<>(256);
-      try (LineNumberReader lnr = openFile(R.raw.glyphlist, Charset.forName("US-ASCII"))) {
-         String line;
-         while ((line = lnr.readLine()) != null) {
-            if (!line.startsWith("#")) {
-               final String[] field = line.split(";");      // field[0] is the glyph name, field[1] the hex value
-               if (field[1].length() == 4) {          // only consider glyph names that map to just one hex value
-                  char c = (char) Integer.parseInt(field[1], 16);
-                  if (isSupported(c)) {
-                     glyphMap.put(field[0], c);
-                  }
-               }
-            }
-         }
-         return glyphMap;
-      }
-   }
-
    /**
-    * Returns {@code line.split(" ")} for the first line that starts with the specified prefix.
+    * Initialize FontMetric by loading the binary font metrics, i. e. the bounding box, the font name,
+    * the width of each character indexed by its WinAnsi code and the kerning pairs.
     *
-    * @throws IOException
-    *       if the reader is closed or another {@code IOException} occurs.
+    * @return this FontMetric object.
     */
-   @NonNull
-   private String[] getLine(LineNumberReader lnr, String prefix) throws IOException {
-      String line = lnr.readLine();
-      while (line != null && !line.startsWith(prefix)) {
-         line = lnr.readLine();
-      }
-      if (line == null) {
-         throw new IOException("missing " + prefix);
-      }
-      return line.split(" ");
-   }
-
-   private static final Pattern WX = Pattern.compile(".*WX\\s+([0-9]+)\\s+;.*");
-   private static final Pattern GN = Pattern.compile(".*N\\s+([A-Za-z]+)\\s+;.*");
-
-   private void loadCharMetrics(LineNumberReader lnr, Map<String,Character> glyphMap) throws IOException {
-      int nLine = Integer.parseInt(getLine(lnr, "StartCharMetrics")[1]);
-      while (nLine-- > 0) {
-         String line = lnr.readLine();
-         Matcher wx = WX.matcher(line), gn = GN.matcher(line);
-         if (wx.matches() && gn.matches() && glyphMap.containsKey(gn.group(1))) {
-            width[glyphMap.get(gn.group(1))] = Integer.parseInt(wx.group(1));
+   FontMetric init() {
+      InputStream is = App.getInstance().getResources().openRawResource(resId);
+      try (DataInputStream dis = new DataInputStream(new BufferedInputStream(is, 1024))) {
+         fontBBoxLLY = dis.readShort();
+         fontBBoxURY = dis.readShort();
+         fontName = dis.readUTF();
+         for (int c = 0; c < width.length; c++) {
+            width[c] = dis.readShort();
          }
-      }
-   }
-
-   private static final Pattern KPX = Pattern.compile("KPX\\s([A-Za-z]+)\\s([A-Za-z]+)\\s-([0-9]+)");
-
-   private void loadKernPairs(LineNumberReader lnr, Map<String,Character> glyphMap) throws IOException {
-      int nLine = Integer.parseInt(getLine(lnr, "StartKernPairs")[1]);
-      while (nLine-- > 0) {
-         Matcher kpx = KPX.matcher(lnr.readLine());
-         if (kpx.matches() && glyphMap.containsKey(kpx.group(1)) && glyphMap.containsKey(kpx.group(2))) {
-            char lft = glyphMap.get(kpx.group(1)), rgt = glyphMap.get(kpx.group(2));
+         for (int pairs = dis.readUnsignedShort(); pairs > 0; pairs--) {
+            int lft = dis.readUnsignedByte(), rgt = dis.readUnsignedByte();
             if (adjust[lft] == null) {
                adjust[lft] = new int[256];        // create subarray only when necessary
             }
-            adjust[lft][rgt] = Integer.parseInt(kpx.group(3));
-         }
-      }
-   }
-
-   /**
-    * Initialize FontMetric by loading {@code *.afm} file.
-    *
-    * @return this FontMetric object.
-    */
-   FontMetric init() {
-      try {
-         Map<String,Character> glyphMap = loadGlyphlist();
-         try (LineNumberReader lnr = openFile(resId, Charset.forName("US-ASCII"))) {
-            fontName = getLine(lnr, "FontName")[1];
-            String[] fontBBox = getLine(lnr, "FontBBox");
-            fontBBoxLLY = Integer.parseInt(fontBBox[2]);
-            fontBBoxURY = Integer.parseInt(fontBBox[4]);
-            loadCharMetrics(lnr, glyphMap);
-            loadKernPairs(lnr, glyphMap);
+            adjust[lft][rgt] = dis.readShort();
          }
       } catch (IOException ioe) {
          Arrays.fill(width, 0);
@@ -36,16 +36,17 @@ public final class Idcards85x54 extends BarcodeDocument {
 
    @Override
    @WorkerThread
-   void writeSerial(int count, String code128, String serialDisplay) {
+   void writeSerial(ContentWriter content, int count, CharSequence code128, String serialDisplay) {
       double x = 57.5 + 95.0 * (count % 2), y = 236.5 - 54.0 * (count / 2);      // in mm
-      writeElement(new Barcode128C(code128, pt(68.0), pt(30.0)), pt(x - 34.0), pt(y + 8.5));
-      writeElement(new Text(serialDisplay, 154, 11, 40, 14, CENTER, BASELINE), pt(x), pt(y));
+      writeElement(content, new Barcode128C(code128, pt(68.0), pt(30.0)), pt(x - 34.0), pt(y + 8.5));
+      writeElement(content, new Text(serialDisplay, 154, 11, 40, 14, CENTER, BASELINE), pt(x), pt(y));
    }
 
    @Override
    @WorkerThread
-   void finishPage(String pagePrefix, int page) {
-      writeElementUpright(new Text(pagePrefix + page, 0, 114, 73, 9, CENTER, CENTER), PAGE_WIDTH / 2, pt(148.5));
+   void finishPage(ContentWriter content, String pagePrefix, int page) {
+      Text text = new Text(pagePrefix + page, 0, 114, 73, 9, CENTER, CENTER);
+      writeElementUpright(content, text, PAGE_WIDTH / 2, pt(148.5));
    }
 
 }
\ No newline at end of file
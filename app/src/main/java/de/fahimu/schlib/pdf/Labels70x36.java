@@ -35,16 +35,16 @@ public final class Labels70x36 extends BarcodeDocument {
 
    @Override
    @WorkerThread
-   void writeSerial(int count, String code128, String serialDisplay) {
+   void writeSerial(ContentWriter content, int count, CharSequence code128, String serialDisplay) {
       double x = 35.0 + 70.0 * (count % 3), y = 262.0 - 36.0 * (count / 3);      // in mm
-      writeElement(new Barcode128C(code128, pt(55.0), pt(20.0)), pt(x - 27.5), pt(y + 5.5));
-      writeElement(new Text(serialDisplay, 0.75, 11, CENTER, BASELINE), pt(x), pt(y));
+      writeElement(content, new Barcode128C(code128, pt(55.0), pt(20.0)), pt(x - 27.5), pt(y + 5.5));
+      writeElement(content, new Text(serialDisplay, 0.75, 11, CENTER, BASELINE), pt(x), pt(y));
    }
 
    @Override
    @WorkerThread
-   void finishPage(String pagePrefix, int page) {
-      writeElement(new Text(pagePrefix + page, 0.5, 9, CENTER, BASELINE), PAGE_WIDTH / 2, pt(33.0));
+   void finishPage(ContentWriter content, String pagePrefix, int page) {
+      writeElement(content, new Text(pagePrefix + page, 0.5, 9, CENTER, BASELINE), PAGE_WIDTH / 2, pt(33.0));
    }
 
 }
\ No newline at end of file
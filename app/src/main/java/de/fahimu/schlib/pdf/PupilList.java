@@ -72,6 +72,20 @@ public final class PupilList extends TextDocument {
    @WorkerThread
    final boolean isEmpty() { return users.isEmpty(); }
 
+   /** {@inheritDoc} */
+   @Override
+   @WorkerThread
+   final String getFingerprintSource() {
+      StringBuilder b = new StringBuilder(getClass().getName());
+      b.append(' ').append(name2).append(' ').append(name1).append(' ').append(date).append(' ').append(firstList);
+      b.append('\n').append(getInfoText());
+      for (User pupil : users) {
+         b.append('\n').append(pupil.getOid()).append(':').append(pupil.getDisplaySerial());
+         b.append(':').append(pupil.getDisplayIdcard());
+      }
+      return b.toString();
+   }
+
    /** {@inheritDoc} */
    @Override
    @WorkerThread
@@ -98,6 +112,7 @@ public final class PupilList extends TextDocument {
          String column1 = App.getStr(R.string.pdf_pupil_list_column_1);
          String column2 = App.getStr(R.string.pdf_pupil_list_column_2);
          String column3 = App.getStr(R.string.pdf_pupil_list_column_3);
+         beginTable(0.75, 0.5, 10, CENTER, CENTER, CENTER);
          add(new TableRow(0.0, 10, 24, column1, column2, column3));
 
          for (int row = 0; row < users.size(); row++) {
@@ -105,7 +120,7 @@ public final class PupilList extends TextDocument {
             TableRow line = new TableRow(0.0, 10, 24, pupil.getDisplaySerial(), pupil.getDisplayIdcard());
             add(line.setSticky(row == 0 || row >= users.size() - 2));
          }
-         finalizeTable(0.75, 0.5, 0, 10, CENTER, CENTER, CENTER);
+         finalizeTable(0);
       }
    }
 
@@ -91,6 +91,7 @@ public final class ReminderBooks extends TextDocument {
             column4 = App.getStr(R.string.pdf_reminder_books_column_4_head);
 
             add(new SingleLine(0.0, 10, 12 + 6, LEFT, subhead).setSticky(true));
+            beginTable(0.75, 0.5, 6, CENTER, CENTER, CENTER, LEFT);
             add(new TableRow(0.0, 9, 16, column1, column2, column3, column4).setSticky(true));
 
             for (int row = 0; row < lendings.size(); row++) {
@@ -107,7 +108,7 @@ public final class ReminderBooks extends TextDocument {
                TableRow line = new TableRow(0.0, 9, 16, column1, column2, column3, column4);
                add(line.setSticky(row == 0 || row >= lendings.size() - 2));
             }
-            finalizeTable(0.75, 0.5, 16, 6, CENTER, CENTER, CENTER, LEFT);
+            finalizeTable(16);
          }
       }
    }
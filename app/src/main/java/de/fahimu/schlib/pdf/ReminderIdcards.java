@@ -84,6 +84,7 @@ public final class ReminderIdcards extends TextDocument {
             column3 = App.getStr(R.string.pdf_reminder_idcards_column_3);
 
             add(new SingleLine(0.0, 12, 14 + 8, LEFT, subhead).setSticky(true));
+            beginTable(0.75, 0.5, 8, CENTER, CENTER, CENTER);
             add(new TableRow(0.0, 10, 20, column1, column2, column3).setSticky(true));
 
             for (int row = 0; row < pupils.size(); row++) {
@@ -93,7 +94,7 @@ public final class ReminderIdcards extends TextDocument {
                TableRow line = new TableRow(0.0, 10, 20, column1, column2);
                add(line.setSticky(row == 0 || row >= pupils.size() - 2));
             }
-            finalizeTable(0.75, 0.5, 20, 8, CENTER, CENTER, CENTER);
+            finalizeTable(20);
          }
       }
    }
@@ -6,6 +6,9 @@
 
 package de.fahimu.schlib.pdf;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import de.fahimu.android.app.App;
 import de.fahimu.schlib.app.R;
 
@@ -31,6 +34,96 @@ final class Text extends Element {
       return HELVETICA;
    }
 
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   /**
+    * The escaped and kerned text string and the width of a measured string.
+    * The width is in glyph space units (1/1000 of the size), so a measure is valid for every size.
+    */
+   private static final class Measure {
+      private final String text;
+      private final int    width;
+
+      private Measure(String text, int width) {
+         this.text = text; this.width = width;
+      }
+   }
+
+   /** The maximum number of measures kept by the {@link #measures} cache. */
+   private static final int MEASURES = 512;
+
+   /**
+    * The measures of the most recently used strings. Many strings are repeated in and across documents,
+    * e. g. class names, shelves, book titles or the fixed text of letters, and need not be measured again.
+    * Guarded by itself, because texts are created by the generating thread and the page rendering threads.
+    */
+   private static final Map<String,Measure> measures = new LinkedHashMap<String,Measure>(2 * MEASURES, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String,Measure> eldest) {
+         return size() > MEASURES;
+      }
+   };
+
+   private static Measure measure(String text) {
+      Measure measure;
+      synchronized (measures) {
+         measure = measures.get(text);
+      }
+      if (measure == null) {
+         FontMetric font = getFont();
+         int w = 0;
+         StringBuilder b = new StringBuilder();
+         if (!text.isEmpty()) {
+            char left = toPrintable(text.charAt(0));
+            for (int i = 1; i < text.length(); i++) {
+               final char right = toPrintable(text.charAt(i));
+               final int adj = font.getAdjustment(left, right);
+
+               append(b, left);
+               if (adj != 0) {
+                  // )adj(: End a string, adjust the text position by adj, begin a string.
+                  b.append(')').append(adj).append('(');
+               }
+               w += font.getWidth(left) - adj;
+               left = right;
+            }
+            append(b, left);
+            w += font.getWidth(left);
+         }
+         measure = new Measure(b.toString(), w);
+         synchronized (measures) {
+            measures.put(text, measure);
+         }
+      }
+      return measure;
+   }
+
+   /**
+    * Returns the widths of all prefixes of the specified string in pt, i. e. {@code widths[k]} is the width of
+    * a Text with the first {@code k} characters of {@code text} and the specified {@code size}. This allows to
+    * find where to break or trim a string without measuring each candidate substring again.
+    *
+    * @param text
+    *       the text string.
+    * @param size
+    *       the size of the glyphs (in pt).
+    * @return the widths of all prefixes of the specified string in pt.
+    */
+   static double[] getPrefixWidths(String text, int size) {
+      FontMetric font = getFont();
+      double[] widths = new double[text.length() + 1];
+      int w = 0;
+      for (int i = 0; i < text.length(); i++) {
+         char c = toPrintable(text.charAt(i));
+         w += font.getWidth(c);
+         if (i > 0) { w -= font.getAdjustment(toPrintable(text.charAt(i - 1)), c); }
+         widths[i + 1] = size * w / 1000.0;
+      }
+      return widths;
+   }
+
+   /* -------------------------------------------------------------------------------------------------------------- */
+
    enum Align {LEFT, CENTER, RIGHT, TOP, BASELINE, BOTTOM}
 
    private final String text;
@@ -83,27 +176,9 @@ final class Text extends Element {
       this.blue = blue;
       this.size = size;
 
-      double w = 0.0;
-      StringBuilder b = new StringBuilder();
-      if (!text.isEmpty()) {
-         char left = toPrintable(text.charAt(0));
-         for (int i = 1; i < text.length(); i++) {
-            final char right = toPrintable(text.charAt(i));
-            final int adj = getFont().getAdjustment(left, right);
-
-            append(b, left);
-            if (adj != 0) {
-               // )adj(: End a string, adjust the text position by adj, begin a string.
-               b.append(')').append(adj).append('(');
-            }
-            w += getFont().getWidth(left) - adj;
-            left = right;
-         }
-         append(b, left);
-         w += getFont().getWidth(left);
-      }
-      this.text = b.toString();
-      this.width = size * w / 1000.0;
+      Measure measure = measure(text);
+      this.text = measure.text;
+      this.width = size * measure.width / 1000.0;
 
       switch (horizontal) {
       case LEFT: x = 0.0; break;
@@ -158,18 +233,19 @@ final class Text extends Element {
    }
 
    /**
-    * Writes the drawing instructions to the specified PDF Document.
+    * Writes the drawing instructions to the specified content stream.
     *
-    * @param document
-    *       the PDF Document where the instructions should be written to.
+    * @param content
+    *       the content stream of the page where the instructions should be written to.
     */
    @Override
-   Document write(Document document) {
+   ContentWriter write(ContentWriter content) {
       // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
       // r g b rg: Set non-stroking color space to DeviceRGB and color to r, g and b (0.0 to 1.0) (Section 4.5.7)
       // 0 Tr: Set the text rendering mode to 0 (fill) (Section 5.2 and 5.2.5)
       // 1 0 0 1 x y cm: Modify CTM to [1 0 0 1 x y], meaning translation by x, y (Section 4.3.3 and 4.2.2)
-      document.write("q %.3f %.3f %.3f rg 0 Tr 1 0 0 1 %.8f %.8f cm\n", red, green, blue, x, y);
+      content.op("q").num(red, 3).num(green, 3).num(blue, 3).op("rg").num(0).op("Tr");
+      content.num(1).num(0).num(0).num(1).num(x).num(y).opLine("cm");
 
       // BT: Begin a text object and initialize the text matrix to the identity (Section 5.3)
       // /F1 size Tf: Set the text font to font resource /F1 and the text font size to size (Section 5.2)
@@ -178,7 +254,8 @@ final class Text extends Element {
       // TJ: Show one or more text strings with individual glyph positioning (Section 5.3.2)
       // ET: End a text object, discarding the text matrix (Section 5.3)
       // Q: Pop the graphics state stack (Section 4.3.3)
-      return document.write("BT /F1 %.8f Tf [(%s)] TJ ET Q\n", size, text);
+      content.op("BT").name("F1").num(size).op("Tf").chars("[(").chars(text).chars(")] ");
+      return content.op("TJ").op("ET").opLine("Q");
    }
 
    @Override
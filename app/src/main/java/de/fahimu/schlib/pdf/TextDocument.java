@@ -13,7 +13,6 @@ import android.support.annotation.WorkerThread;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 
@@ -55,7 +54,7 @@ abstract class TextDocument extends Document {
       }
 
       @WorkerThread
-      abstract void write(double y);
+      abstract void write(ContentWriter content, double y);
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
@@ -80,9 +79,9 @@ abstract class TextDocument extends Document {
 
       @Override
       @WorkerThread
-      void write(double y) {
+      void write(ContentWriter content, double y) {
          for (Line line : lines) {
-            line.write(y);
+            line.write(content, y);
             y -= line.getHeight();
          }
       }
@@ -102,7 +101,7 @@ abstract class TextDocument extends Document {
       EmptyLine(int height) { super(height); }
 
       @WorkerThread
-      void write(double y) { }
+      void write(ContentWriter content, double y) { }
    }
 
    /* -------------------------------------------------------------------------------------------------------------- */
@@ -185,12 +184,29 @@ abstract class TextDocument extends Document {
       }
 
       private final class AnnotatedLine {
-         private final Text   text;
-         private final double textX;
-         private final String drawLineOps;
+         private final Text    text;
+         private final double  textX;
+         private final boolean dots;
+         private final double  lineX, width;
 
-         private AnnotatedLine(Text text, double textX, String drawLineOps) {
-            this.text = text; this.textX = textX; this.drawLineOps = drawLineOps;
+         private AnnotatedLine(Text text, double textX, boolean dots, double lineX, double width) {
+            this.text = text; this.textX = textX; this.dots = dots; this.lineX = lineX; this.width = width;
+         }
+
+         @WorkerThread
+         private void writeLine(ContentWriter content, double y) {
+            // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
+            // 0.67 G: Set stroking color space to DeviceGray and stroking gray level to 0.67 (Section 4.5.7)
+            // 1 w: Set the line width (Section 4.3.3)
+            // [dashPattern] 0 d: Set the line dash pattern (Section 4.3.3)
+            // 1 J: Set the line cap style to round cap (Section 4.3.3)
+            content.op("q").num(0.67, 3).op("G").num(1).op("w").chars(dots ? "[0 2] " : "[4 5] ");
+            content.num(0).op("d").num(1).opLine("J");
+            // x y m x+width y l: Append to the current path as a complete subpath
+            // the straight line from (x,y) to (x+width, y) (Section 4.4.1)
+            // S: stroke the path (Section 4.4.2)
+            // Q: Pop the graphics state stack (Section 4.3.3)
+            content.num(lineX).num(y).op("m").num(lineX + width).num(y).op("l").op("S").opLine("Q");
          }
       }
 
@@ -200,21 +216,8 @@ abstract class TextDocument extends Document {
       @WorkerThread
       private SingleLine appendAnnotatedUnderline(double gray, String text, boolean dots, double lineX, double width) {
          Text annotation = new Text(text, gray, 8, CENTER, TOP);
-         String dashPattern = dots ? "0 2" : "4 5";
-         // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
-         // 0.75 G: Set stroking color space to DeviceGray and stroking gray level to 0.75 (Section 4.5.7)
-         // lineWidth w: Set the line width (Section 4.3.3)
-         // [lineWidth] 0 d: Set the line dash pattern to lineWidth on, lineWidth off (Section 4.3.3)
-         // 1 J: Set the line cap style to round cap (Section 4.3.3)
-         String op1 = App.format("q 0.67 G 1 w [%s] 0 d 1 J\n", dashPattern);
-         // x %1$.8f m x+width %1$.8f l: Append to the current path as a complete subpath
-         // the straight line from (x,y) to (x+width, y) (Section 4.4.1)
-         // S: stroke the path (Section 4.4.2)
-         // Q: Pop the graphics state stack (Section 4.3.3)
-         String op2 = App.format("%.8f %%1$.8f m %.8f %%1$.8f l S Q\n", lineX, lineX + width);
-
          isAnnotated = true;
-         annotatedLines.add(new AnnotatedLine(annotation, lineX + width / 2, op1 + op2));
+         annotatedLines.add(new AnnotatedLine(annotation, lineX + width / 2, dots, lineX, width));
          return this;
       }
 
@@ -226,11 +229,11 @@ abstract class TextDocument extends Document {
 
       @Override
       @WorkerThread
-      void write(double y) {
-         writeElement(text, textX, y);
+      void write(ContentWriter content, double y) {
+         writeElement(content, text, textX, y);
          for (AnnotatedLine annotatedLine : annotatedLines) {
-            TextDocument.this.write(App.format(annotatedLine.drawLineOps, y - text.getOffsetTop()));
-            writeElement(annotatedLine.text, annotatedLine.textX, y - super.getHeight());
+            annotatedLine.writeLine(content, y - text.getOffsetTop());
+            writeElement(content, annotatedLine.text, annotatedLine.textX, y - super.getHeight());
          }
       }
    }
@@ -278,6 +281,21 @@ abstract class TextDocument extends Document {
          layoutSyllables();
       }
 
+      /**
+       * Creates a new line of text from syllables that have already been measured by a {@link Template}.
+       */
+      @WorkerThread
+      private MultiLine(int height, boolean justified, Text space, Text hyphen,
+            List<Text> syllables, List<Text> separators) {
+         super(height);
+         this.justified = justified;
+         this.space = space;
+         this.hyphen = hyphen;
+         this.syllables.addAll(syllables);
+         this.separators.addAll(separators);
+         layoutSyllables();
+      }
+
       @WorkerThread
       private void addSyllablesAndSeparators(String text, double gray, int size) {
          int start = 0;
@@ -340,7 +358,7 @@ abstract class TextDocument extends Document {
 
       @Override
       @WorkerThread
-      void write(double y) {
+      void write(ContentWriter content, double y) {
          double x = PAGE_LEFT;
          Iterator<LayoutInfo> iterator = layoutInfos.iterator();
          LayoutInfo layoutInfo = iterator.next();
@@ -349,12 +367,12 @@ abstract class TextDocument extends Document {
             Text syllable = syllables.get(i), separator = separators.get(i);
             if (syllable == layoutInfo.firstSyllable) {
                if (separators.get(i - 1) == hyphen) {
-                  writeElement(hyphen, x, y);
+                  writeElement(content, hyphen, x, y);
                }
                layoutInfo = iterator.next();
                x = PAGE_LEFT; y -= super.getHeight();       // set cursor to start of next line
             }
-            writeElement(syllable, x, y);
+            writeElement(content, syllable, x, y);
             x += syllable.getWidth();
             if (separator == space) {
                x += space.getWidth() + layoutInfo.extraSpace;
@@ -427,36 +445,47 @@ abstract class TextDocument extends Document {
 
       @Override
       @WorkerThread
-      void write(double y) {
+      void write(ContentWriter content, double y) {
          double x = PAGE_LEFT, h = getHeight();
          // q: Push the current graphics state on the graphics state stack (Section 4.3.3)
          // lineGray G: Set stroking color space to DeviceGray and stroking gray level to lineGray (Section 4.5.7)
          // lineWidth w: Set the line width (Section 4.3.3)
-         TextDocument.this.write("q %.3f G %.8f w\n", lineGray, lineWidth);
+         content.op("q").num(lineGray, 3).op("G").num(lineWidth).opLine("w");
 
          for (int i = 0; i < columnWidths.length + 1; i++) {
             double width = (i < columnWidths.length) ? padding + columnWidths[i] + padding : PAGE_RIGHT - x;
             // x y-h width h re: Append a rectangle to the current path as a complete subpath,
             // with lower-left corner (x, y-h) and dimensions (width, h) (Section 4.4.1)
-            TextDocument.this.write("%.8f %.8f %.8f %.8f re\n", x, y - h, width, h);
+            content.num(x).num(y - h).num(width).num(h).opLine("re");
             if (i < texts.length) {
                Text text = (i < columnWidths.length) ? texts[i] : getTrimmed(i, width - 2 * padding);
                double offset = (aligns[i] == LEFT) ? padding :
                                (aligns[i] == RIGHT) ? width - padding : width / 2;
-               writeElement(text, x + offset, y - h / 2);
+               writeElement(content, text, x + offset, y - h / 2);
             }
             x += width;
          }
          // S: stroke the path (Section 4.4.2)
          // Q: Pop the graphics state stack (Section 4.3.3)
-         TextDocument.this.write("S Q\n");
+         content.op("S").opLine("Q");
       }
 
+      /**
+       * Returns the text of column {@code i}, trimmed at the last space where it fits into {@code maxWidth}
+       * including the appended {@code " ..."}. The candidates are found by the prefix widths of the string.
+       */
       private Text getTrimmed(int i, double maxWidth) {
-         String string = strings[i];
-         while (texts[i].getWidth() > maxWidth) {
-            string = string.substring(0, string.lastIndexOf(' '));
-            texts[i] = new Text(string + " ...", gray, size, aligns[i], CENTER);
+         if (texts[i].getWidth() > maxWidth) {
+            String string = strings[i];
+            double[] widths = Text.getPrefixWidths(string, size);
+            // the width of "..." appended to a space, i. e. the width of " ..." without the width of the space
+            double dots = new Text(" ...", gray, size, LEFT, CENTER).getWidth() -
+                          new Text(" ", gray, size, LEFT, CENTER).getWidth();
+            int end = string.lastIndexOf(' ');
+            while (end > 0 && widths[end + 1] + dots > maxWidth) {
+               end = string.lastIndexOf(' ', end - 1);
+            }
+            texts[i] = new Text(string.substring(0, Math.max(end, 0)) + " ...", gray, size, aligns[i], CENTER);
          }
          return texts[i];
       }
@@ -494,6 +523,164 @@ abstract class TextDocument extends Document {
       return b.toString();
    }
 
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   /**
+    * A text with user variables, e. g. the text of a letter, compiled once into paragraphs of words.
+    * Words without user variables are measured when the template is compiled, so adding the template for each
+    * recipient only measures the words which contain user variables. A user variable is written like in
+    * {@link #replaceUserVariables(String, String...)}, but its name must be one of the names passed to
+    * the constructor. The paragraphs are separated by {@code '\n'} and added as {@link MultiLine}s,
+    * or as {@link EmptyLine}s if they are empty.
+    */
+   final class Template {
+
+      /**
+       * A word followed by a separator. A literal word has a measured {@code text}; otherwise the word
+       * consists of {@code parts}, which are either literal strings or the indices of user variables.
+       */
+      private final class Word {
+         private final Text     text;
+         private final Object[] parts;
+         private final Text     separator;
+
+         private Word(Text text, Object[] parts, Text separator) {
+            this.text = text; this.parts = parts; this.separator = separator;
+         }
+      }
+
+      private final double gray;
+      private final int    size, height, emptyHeight;
+      private final boolean justified;
+      private final Text    space, hyphen;
+      private final String[] variables;
+
+      /** The words of each paragraph, or {@code null} if the paragraph is empty. */
+      private final List<List<Word>> paragraphs = new ArrayList<>();
+
+      /**
+       * Compiles the specified text with user variables.
+       *
+       * @param text
+       *       the text with zero or more user variables.
+       * @param gray
+       *       the gray level (0.0 to 1.0).
+       * @param size
+       *       the size of the glyphs (in pt).
+       * @param height
+       *       the height of one of the lines (in pt).
+       * @param emptyHeight
+       *       the height of an empty paragraph (in pt).
+       * @param justified
+       *       if true, the text will be aligned to the right bound of the document.
+       * @param variables
+       *       the names of the user variables.
+       */
+      @WorkerThread
+      Template(String text, double gray, int size, int height, int emptyHeight, boolean justified,
+            String... variables) {
+         this.gray = gray;
+         this.size = size;
+         this.height = height;
+         this.emptyHeight = emptyHeight;
+         this.justified = justified;
+         this.space = new Text(" ", gray, size, LEFT, TOP);
+         this.hyphen = new Text("-", gray, size, LEFT, TOP);
+         this.variables = variables;
+         for (String paragraph : text.split("\n")) {
+            paragraphs.add(paragraph.isEmpty() ? null : compile(paragraph));
+         }
+      }
+
+      @WorkerThread
+      private List<Word> compile(String paragraph) {
+         List<Word> words = new ArrayList<>();
+         List<Object> parts = new ArrayList<>();
+         StringBuilder b = new StringBuilder();
+         for (int end, i = 0; i <= paragraph.length(); i++) {
+            char c = (i < paragraph.length()) ? paragraph.charAt(i) : ' ';
+            if (c == '{' && (end = paragraph.indexOf('}', i + 1)) >= 0) {
+               int variable = Arrays.asList(variables).indexOf(paragraph.substring(i + 1, end));
+               if (variable >= 0) {
+                  if (b.length() > 0) { parts.add(b.toString()); b.setLength(0); }
+                  parts.add(variable);
+                  i = end; c = 0;
+               }
+            }
+            if (c == ' ' || c == '|') {
+               if (b.length() > 0) { parts.add(b.toString()); b.setLength(0); }
+               addWord(words, parts, (c == ' ') ? space : hyphen);
+               parts.clear();
+            } else if (c > 0) { b.append(c); }
+         }
+         return words;
+      }
+
+      @WorkerThread
+      private void addWord(List<Word> words, List<Object> parts, Text separator) {
+         if (parts.size() == 1 && parts.get(0) instanceof String) {
+            words.add(new Word(new Text((String) parts.get(0), gray, size, LEFT, TOP), null, separator));
+         } else if (!parts.isEmpty()) {       // empty syllables are ignored, as by MultiLine
+            words.add(new Word(null, parts.toArray(), separator));
+         }
+      }
+
+      /**
+       * Adds the paragraphs of this template to the document, after replacing the user variables
+       * with the specified values.
+       *
+       * @param values
+       *       the values of the user variables, in the order of their names.
+       */
+      @WorkerThread
+      void add(String... values) {
+         if (values.length != variables.length) {
+            throw new IllegalArgumentException(Arrays.toString(values) + ".length not " + variables.length);
+         }
+         List<Text> syllables = new ArrayList<>(), separators = new ArrayList<>();
+         StringBuilder b = new StringBuilder();
+         for (List<Word> words : paragraphs) {
+            if (words == null) {
+               TextDocument.this.add(new EmptyLine(emptyHeight));
+               continue;
+            }
+            for (Word word : words) {
+               if (word.text != null) {
+                  syllables.add(word.text);
+                  separators.add(word.separator);
+               } else {
+                  b.setLength(0);
+                  for (Object part : word.parts) {
+                     b.append((part instanceof Integer) ? values[(Integer) part] : (String) part);
+                  }
+                  addSyllables(b, word.separator, syllables, separators);
+               }
+            }
+            TextDocument.this.add(new MultiLine(height, justified, space, hyphen, syllables, separators));
+            syllables.clear();
+            separators.clear();
+         }
+      }
+
+      /**
+       * Splits the resolved word like {@link MultiLine} does, because the values may contain separators.
+       */
+      @WorkerThread
+      private void addSyllables(CharSequence word, Text separator, List<Text> syllables, List<Text> separators) {
+         int start = 0;
+         for (int i = 0; i <= word.length(); i++) {
+            char c = (i < word.length()) ? word.charAt(i) : 0;
+            if (c == ' ' || c == '|' || i == word.length()) {
+               if (start < i) {
+                  syllables.add(new Text(word.subSequence(start, i).toString(), gray, size, LEFT, TOP));
+                  separators.add((i == word.length()) ? separator : (c == ' ') ? space : hyphen);
+               }
+               start = i + 1;
+            }
+         }
+      }
+   }
+
    /* ============================================================================================================== */
 
    private static final double MARGIN      = pt(20.0);
@@ -503,7 +690,7 @@ abstract class TextDocument extends Document {
    private static final double PAGE_TOP    = PAGE_HEIGHT - MARGIN;
    private static final double PAGE_BOTTOM = MARGIN + PAGE_FOOTER;
 
-   private final List<Line> lines = new ArrayList<>();
+   private static final double FOOTER_WIDTH = PAGE_RIGHT - PAGE_LEFT;
 
    private AsyncDocumentWriter asyncDocumentWriter;
 
@@ -519,9 +706,11 @@ abstract class TextDocument extends Document {
       try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
          this.asyncDocumentWriter = asyncDocumentWriter;
          try {
+            textPage = new TextPage();
             addLines();
-            add(new EmptyLine(0));  // if last line is a block, enforce refreshLayout by adding empty non sticky line
-            writeDocument();
+            add(new EmptyLine(0));  // if last line is a block, enforce layout by adding empty non sticky line
+            finishPage();
+            defineFooters();
             try { Thread.sleep(250); } catch (InterruptedException e) { /* IGNORE */ }
             assertNotCancelled();
             scope.d("write document finished successfully");
@@ -542,17 +731,34 @@ abstract class TextDocument extends Document {
 
    private Block block;
 
+   /** The format of the current table, or {@code null} if there is no current table. */
+   private Table table;
+
+   /** The rows of the current table without cell values, which can't be rendered until they get their widths. */
+   private final List<TableRow> tableRows = new ArrayList<>();
+
+   /**
+    * Adds the specified line to the document. Each page is written as soon as it is full, so the document
+    * keeps only the lines of the current page, of the current block of sticky lines and of at most
+    * {@link #HELD_PAGES} pages held back because of the current table.
+    *
+    * @param line
+    *       the line to add.
+    * @return this document.
+    */
    @WorkerThread
    final TextDocument add(@NonNull Line line) {
       assertNotCancelled();
+      if (line instanceof TableRow) {
+         table.measure((TableRow) line);
+         tableRows.add((TableRow) line);
+      }
       if (!line.sticky) {
          if (block != null) {
-            lines.add(block);
-            refreshLayout(block);
+            layout(block);
             block = null;
          }
-         lines.add(line);
-         refreshLayout(line);
+         layout(line);
       } else if (block == null) {
          block = new Block(line);
       } else {
@@ -561,112 +767,188 @@ abstract class TextDocument extends Document {
       return this;
    }
 
+   /* -------------------------------------------------------------------------------------------------------------- */
+
+   /**
+    * The lines of one page and their vertical positions. The lines are laid out by the generating thread,
+    * but the page is rendered by one of the page rendering threads of {@link Document}.
+    * The page number footer is a Form XObject, which is defined after the last page, when the number of pages
+    * is known.
+    */
+   private final class TextPage implements Page {
+      private final List<Line> lines = new ArrayList<>();
+      private       double[]   ys    = new double[32];
+      private       String     footer;
+
+      @WorkerThread
+      void add(Line line, double y) {
+         if (lines.size() == ys.length) { ys = Arrays.copyOf(ys, 2 * ys.length); }
+         ys[lines.size()] = y;
+         lines.add(line);
+      }
+
+      @Override
+      @WorkerThread
+      public void render(@NonNull ContentWriter content) {
+         for (int i = 0; i < lines.size() && !isCancelled(); i++) {
+            lines.get(i).write(content, ys[i]);
+         }
+         content.op("q").num(1).num(0).num(0).num(1).num(PAGE_LEFT).num(MARGIN).opLine("cm");
+         content.name(footer).opLine("Do").opLine("Q");
+      }
+   }
+
+   /** The page which is currently laid out. */
+   private TextPage textPage;
+
    private double y = PAGE_TOP;
 
+   /** The names of the page number footers, one for each page written so far. */
+   private final List<String> footers = new ArrayList<>();
+
+   /** The maximum number of pages held back because of the current table, see {@link #finishPage()}. */
+   private static final int HELD_PAGES = 4;
+
+   /** The finished pages with rows of the current table, in order. */
+   private final List<TextPage> heldPages = new ArrayList<>();
+
    @WorkerThread
-   private void refreshLayout(Line line) {
+   private void layout(Line line) {
       if (y - line.getHeight() < PAGE_BOTTOM) {
-         startNewPage();
+         finishPage();
       }
       if (y == PAGE_TOP && line instanceof EmptyLine) {
          return;     // ignore empty line at top of page
       }
+      textPage.add(line, y);
       y -= line.getHeight();
    }
 
-   private int page;    // each page will be counted twice, once in addLines() and once again in writeDocument()
-
+   /**
+    * Writes the current page, or holds it back if the current table is not yet finalized, and starts a new page.
+    * If {@link #HELD_PAGES} pages are held back, they are written with the column widths of the rows added so far,
+    * so a long table keeps only a few pages. The columns of later pages may be wider, but never narrower.
+    */
    @WorkerThread
-   private void startNewPage() {
-      // because we count each page twice, we'll report new pages only on odd page values
-      if ((++page & 1) == 1) {
-         asyncDocumentWriter.onPageWrite();
+   private void finishPage() {
+      textPage.footer = reserveFormName();
+      footers.add(textPage.footer);
+      if (tableRows.isEmpty()) {
+         writePage(textPage);
+      } else {
+         heldPages.add(textPage);
+         if (heldPages.size() == HELD_PAGES) {
+            int rows = 0;
+            for (TextPage heldPage : heldPages) {
+               rows += countTableRows(heldPage.lines);
+            }
+            writeHeldPages(rows);
+         }
       }
+      asyncDocumentWriter.onPageWrite();
+      textPage = new TextPage();
       y = PAGE_TOP;
    }
 
    @WorkerThread
-   private void writeDocument() {
-      try (@SuppressWarnings ("unused") Log.Scope scope = Log.e()) {
-         startNewPage();
-         final int pages = page;       // the total number of pages
-         for (Line line : lines) {
-            assertNotCancelled();
-            if (y - line.getHeight() < PAGE_BOTTOM) {
-               finishPage(pages);
-               writeNewPage();
+   private void defineFooters() {
+      final int pages = footers.size();        // the total number of pages
+      for (int page = 0; page < pages; page++) {
+         final Text footer = new Text(App.getStr(R.string.pdf_page_of, page + 1, pages), 0.5, 9, CENTER, BOTTOM);
+         defineForm(footers.get(page), new Element() {
+            @Override
+            ContentWriter write(ContentWriter content) {
+               writeElement(content, footer, FOOTER_WIDTH / 2, 0);
+               return content;
             }
-            if (y == PAGE_TOP && line instanceof EmptyLine) {
-               continue;   // ignore empty line at top of page
-            }
-            line.write(y);
-            y -= line.getHeight();
+         }, FOOTER_WIDTH, PAGE_FOOTER);
+      }
+   }
+
+   /** Returns the number of {@link TableRow}s in the specified lines, including the lines of blocks. */
+   @WorkerThread
+   private static int countTableRows(List<? extends Line> lines) {
+      int rows = 0;
+      for (Line line : lines) {
+         if (line instanceof TableRow) {
+            rows += 1;
+         } else if (line instanceof Block) {
+            rows += countTableRows(((Block) line).lines);
          }
-         finishPage(pages);
       }
+      return rows;
    }
 
+   /**
+    * Sets the cell values of the first {@code rows} rows of the current table with the column widths of all rows
+    * added so far, and writes the pages held back because of the table.
+    */
    @WorkerThread
-   private void finishPage(int pages) {
-      String text = App.getStr(R.string.pdf_page_of, page - pages + 1, pages);
-      writeElement(new Text(text, 0.5, 9, CENTER, BOTTOM), PAGE_WIDTH / 2, MARGIN);
-      startNewPage();
+   private void writeHeldPages(int rows) {
+      final double[] widths = table.widths.clone();
+      for (TableRow tableRow : tableRows.subList(0, rows)) {
+         tableRow.setCellValues(table.lineGray, table.lineWidth, table.padding, widths);
+      }
+      tableRows.subList(0, rows).clear();
+      for (TextPage heldPage : heldPages) {
+         writePage(heldPage);
+      }
+      heldPages.clear();
    }
 
    /**
-    * Must be called by the concrete subclass after adding the last {@link TableRow} of a table.
+    * The format of a table and the width of its columns, except the last one, which grows with each added row.
+    */
+   private static final class Table {
+      private final double   lineGray, lineWidth;
+      private final int      padding;
+      private final Align[]  alignments;
+      private final double[] widths;
+
+      @WorkerThread
+      Table(double lineGray, double lineWidth, int padding, Align[] alignments) {
+         this.lineGray = lineGray; this.lineWidth = lineWidth;
+         this.padding = padding; this.alignments = alignments;
+         this.widths = new double[alignments.length - 1];
+      }
+
+      @WorkerThread
+      void measure(TableRow tableRow) {
+         tableRow.setAlignsAndTexts(alignments);
+         for (int j = 0, min = Math.min(widths.length, tableRow.texts.length); j < min; j++) {
+            widths[j] = Math.max(widths[j], tableRow.texts[j].getWidth());
+         }
+      }
+   }
+
+   /**
+    * Must be called by the concrete subclass before adding the first {@link TableRow} of a table.
     *
     * @param lineGray
     *       the color of the lines that edge the cells.
     * @param lineWidth
     *       the width of the lines that edge the cells (in pt).
-    * @param height
-    *       the height of the empty line finalizing the table (in pt).
     * @param padding
     *       the left and right padding of the cells (in pt).
     * @param alignments
     *       the horizontal text alignment for each column.
     */
    @WorkerThread
-   final void finalizeTable(double lineGray, double lineWidth, int height, int padding, Align... alignments) {
-      // Step 1: add new empty non sticky line with the specified height
-      add(new EmptyLine(height));
-
-      // Step 2: Build temporary LinkedList of all TableRows
-      LinkedList<TableRow> tableRows = new LinkedList<>();
-      buildTableRows(tableRows, lines, 1);
-
-      // Step 3: Calculate the width of each column, except the last one
-      final double[] widths = new double[alignments.length - 1];
-      for (final TableRow tableRow : tableRows) {
-         tableRow.setAlignsAndTexts(alignments);
-         for (int j = 0, min = Math.min(alignments.length - 1, tableRow.texts.length); j < min; j++) {
-            if (widths[j] < tableRow.texts[j].getWidth()) {
-               widths[j] = tableRow.texts[j].getWidth();
-            }
-         }
-      }
-      // Step 4: Set the cell values for each row
-      for (TableRow tableRow : tableRows) {
-         tableRow.setCellValues(lineGray, lineWidth, padding, widths);
-      }
+   final void beginTable(double lineGray, double lineWidth, int padding, Align... alignments) {
+      table = new Table(lineGray, lineWidth, padding, alignments);
    }
 
+   /**
+    * Must be called by the concrete subclass after adding the last {@link TableRow} of a table.
+    *
+    * @param height
+    *       the height of the empty line finalizing the table (in pt).
+    */
    @WorkerThread
-   private boolean buildTableRows(LinkedList<TableRow> tableRows, List<Line> lines, int lastOffset) {
-      for (int i = lines.size() - 1 - lastOffset; i >= 0; i--) {
-         Line line = lines.get(i);
-         if (line instanceof TableRow) {
-            tableRows.addFirst((TableRow) line);
-         } else if (line instanceof Block) {
-            if (buildTableRows(tableRows, ((Block) line).lines, 0)) {
-               return true;
-            }
-         } else {
-            return true;
-         }
-      }
-      return false;
+   final void finalizeTable(int height) {
+      add(new EmptyLine(height));         // lays out the last block of sticky rows, if any
+      writeHeldPages(tableRows.size());
+      table = null;
    }
 
-}
\ No newline at end of file
+}
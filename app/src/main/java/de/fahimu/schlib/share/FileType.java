@@ -16,7 +16,8 @@ public enum FileType implements ExternalFile.Type {
 
    BACKUP(R.string.external_file_backup),
    PRINTS(R.string.external_file_prints),
-   IMPORT(R.string.external_file_import);
+   IMPORT(R.string.external_file_import),
+   TRACES(R.string.external_file_traces);
 
    private final int resId;
 